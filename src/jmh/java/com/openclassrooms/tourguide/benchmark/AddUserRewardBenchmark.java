@@ -0,0 +1,55 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Coût de {@link User#addUserReward(UserReward)} lorsque plusieurs threads récompensent le
+ * même utilisateur : la plupart des appels concernent une attraction déjà récompensée.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class AddUserRewardBenchmark {
+
+    private List<Attraction> attractions;
+    private User user;
+    private VisitedLocation visitedLocation;
+
+    @Setup(Level.Trial)
+    public void setUpAttractions() {
+        attractions = new StubGpsUtil(26).getAttractions();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpUser() {
+        user = new User(UUID.randomUUID(), "user", "000", "user@tourGuide.com");
+        visitedLocation = new VisitedLocation(user.getUserId(), attractions.get(0), new Date());
+    }
+
+    @Benchmark
+    public boolean addUserReward() {
+        Attraction attraction = attractions.get(ThreadLocalRandom.current().nextInt(attractions.size()));
+        return !user.hasRewardFor(attraction) && user.addUserReward(new UserReward(visitedLocation, attraction, 1));
+    }
+}
@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Coût de {@link RewardsService#calculateRewards(User)} selon la longueur de l'historique :
+ * évaluation complète d'un nouvel historique, puis évaluation incrémentale d'une seule
+ * nouvelle localisation sur un historique existant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CalculateRewardsBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int historyLength;
+
+    @Param({"26", "1000"})
+    public int attractionCount;
+
+    private RewardsService rewardsService;
+    private User freshUser;
+    private User trackedUser;
+
+    @Setup(Level.Trial)
+    public void setUpService() {
+        rewardsService = new RewardsService(new StubGpsUtil(attractionCount), new StubRewardCentral());
+        trackedUser = newUserWithHistory();
+        rewardsService.calculateRewards(trackedUser);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpUsers() {
+        freshUser = newUserWithHistory();
+        trackedUser.addToVisitedLocations(new VisitedLocation(trackedUser.getUserId(), StubGpsUtil.randomLocation(), new Date()));
+    }
+
+    @Benchmark
+    public User fullHistory() {
+        rewardsService.calculateRewards(freshUser);
+        return freshUser;
+    }
+
+    @Benchmark
+    public User newLocationOnly() {
+        rewardsService.calculateRewards(trackedUser);
+        return trackedUser;
+    }
+
+    private User newUserWithHistory() {
+        User user = new User(UUID.randomUUID(), "user", "000", "user@tourGuide.com");
+        for (int i = 0; i < historyLength; i++) {
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), StubGpsUtil.randomLocation(), new Date()));
+        }
+        return user;
+    }
+}
@@ -0,0 +1,45 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+
+import gpsUtil.location.Location;
+
+/**
+ * Coût d'un calcul de distance {@link RewardsService#getDistance(Location, Location)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DistanceBenchmark {
+
+    private static final int LOCATIONS = 1024;
+
+    private RewardsService rewardsService;
+    private Location[] locations;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rewardsService = new RewardsService(new StubGpsUtil(26), new StubRewardCentral());
+        locations = new Location[LOCATIONS];
+        for (int i = 0; i < LOCATIONS; i++) {
+            locations[i] = StubGpsUtil.randomLocation();
+        }
+    }
+
+    @Benchmark
+    public double getDistance() {
+        int i = next++ & (LOCATIONS - 1);
+        return rewardsService.getDistance(locations[i], locations[(i + 1) & (LOCATIONS - 1)]);
+    }
+}
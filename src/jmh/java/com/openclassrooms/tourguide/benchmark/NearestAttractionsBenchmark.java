@@ -0,0 +1,65 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Coût de {@link TourGuideService#getFiveNearestByAttractions(VisitedLocation)} selon la taille
+ * du catalogue d'attractions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NearestAttractionsBenchmark {
+
+    private static final int LOCATIONS = 1024;
+
+    @Param({"26", "1000", "10000"})
+    public int attractionCount;
+
+    private TourGuideService tourGuideService;
+    private VisitedLocation[] locations;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        InternalTestHelper.setInternalUserNumber(0);
+        RewardsService rewardsService = new RewardsService(new StubGpsUtil(attractionCount), new StubRewardCentral());
+        tourGuideService = new TourGuideService(new StubGpsUtil(attractionCount), rewardsService);
+        tourGuideService.tracker.stopTracking();
+
+        locations = new VisitedLocation[LOCATIONS];
+        for (int i = 0; i < LOCATIONS; i++) {
+            locations[i] = new VisitedLocation(UUID.randomUUID(), StubGpsUtil.randomLocation(), new Date());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        tourGuideService.stopTracking();
+    }
+
+    @Benchmark
+    public List<NearbyAttractionDTO> getFiveNearestByAttractions() {
+        return tourGuideService.getFiveNearestByAttractions(locations[next++ & (LOCATIONS - 1)]);
+    }
+}
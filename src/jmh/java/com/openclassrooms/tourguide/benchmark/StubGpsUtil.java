@@ -0,0 +1,46 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GpsUtil sans latence ni limitation de débit : seules les performances de TourGuide sont mesurées.
+ */
+public class StubGpsUtil extends GpsUtil {
+
+    private final List<Attraction> attractions;
+
+    public StubGpsUtil(int attractionCount) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Attraction> generated = new ArrayList<>(attractionCount);
+        for (int i = 0; i < attractionCount; i++) {
+            // répartition proche de celle du catalogue réel (États-Unis continentaux)
+            generated.add(new Attraction("Attraction " + i, "city", "state",
+                    random.nextDouble(25, 49), random.nextDouble(-125, -67)));
+        }
+        this.attractions = List.copyOf(generated);
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return new VisitedLocation(userId, randomLocation(), new Date());
+    }
+
+    static Location randomLocation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new Location(random.nextDouble(25, 49), random.nextDouble(-125, -67));
+    }
+}
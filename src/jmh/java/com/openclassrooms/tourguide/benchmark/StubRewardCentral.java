@@ -0,0 +1,16 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.UUID;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * RewardCentral sans latence, renvoyant des points déterministes.
+ */
+public class StubRewardCentral extends RewardCentral {
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return (attractionId.hashCode() ^ userId.hashCode()) & 0x3FF;
+    }
+}
@@ -1,14 +1,46 @@
 package com.openclassrooms.tourguide;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
+import com.openclassrooms.tourguide.dto.UserNearbyAttractionsDTO;
+import com.openclassrooms.tourguide.dto.UserRewardsDTO;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import gpsUtil.location.VisitedLocation;
 
+import com.openclassrooms.tourguide.cluster.BulkForwarder;
+import com.openclassrooms.tourguide.resilience.UpstreamUnavailableException;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
@@ -19,9 +51,17 @@ import tripPricer.Provider;
 public class TourGuideController {
 
 	TourGuideService tourGuideService;
+	private final ObjectMapper objectMapper;
+	private final Duration bulkTimeout;
+	// répartition des requêtes groupées entre instances, null sur une instance seule
+	private final BulkForwarder bulkForwarder;
 
-    public TourGuideController(TourGuideService tourGuideService) {
+    public TourGuideController(TourGuideService tourGuideService, ObjectMapper objectMapper,
+    						   TourGuideProperties properties, Optional<BulkForwarder> bulkForwarder) {
     	this.tourGuideService = tourGuideService;
+    	this.objectMapper = objectMapper;
+    	this.bulkTimeout = properties.getBulk().getTimeout();
+    	this.bulkForwarder = bulkForwarder.orElse(null);
     }
 	
     @RequestMapping("/")
@@ -48,6 +88,11 @@ public class TourGuideController {
     	return tourGuideService.getFiveNearestByAttractions(visitedLocation);
     }
     
+    @RequestMapping("/getLocationHistory")
+    public List<VisitedLocation> getLocationHistory(@RequestParam String userName) {
+    	return tourGuideService.getUserLocationHistory(getUser(userName));
+    }
+
     @RequestMapping("/getRewards") 
     public List<UserReward> getRewards(@RequestParam String userName) {
     	return tourGuideService.getUserRewards(getUser(userName));
@@ -58,6 +103,153 @@ public class TourGuideController {
     	return tourGuideService.getTripDeals(getUser(userName));
     }
     
+    /*
+     * Variantes asynchrones : le thread du conteneur est libéré pendant les appels
+     * à GpsUtil, RewardCentral et TripPricer, la réponse est écrite à la complétion.
+     */
+    @RequestMapping("/async/getLocation")
+    public CompletableFuture<VisitedLocation> getLocationAsync(@RequestParam String userName) {
+    	return tourGuideService.getUserLocationAsync(getUser(userName));
+    }
+
+    @RequestMapping("/async/getNearbyAttractions")
+    public CompletableFuture<List<NearbyAttractionDTO>> getNearbyAttractionsAsync(@RequestParam String userName) {
+    	return tourGuideService.getUserLocationAsync(getUser(userName))
+    			.thenCompose(tourGuideService::getFiveNearestByAttractionsAsync);
+    }
+
+    @RequestMapping("/async/getTripDeals")
+    public CompletableFuture<List<Provider>> getTripDealsAsync(@RequestParam String userName) {
+    	return tourGuideService.getTripDealsAsync(getUser(userName));
+    }
+    
+    /*
+     * Variantes groupées : le corps de la requête est la liste JSON des noms d'utilisateurs,
+     * la réponse est écrite en NDJSON, une ligne par utilisateur distinct. Un utilisateur
+     * encore en attente après tourguide.bulk.timeout reçoit une ligne d'erreur. En cluster, les
+     * utilisateurs d'autres instances leur sont transmis et leurs lignes recopiées.
+     */
+    @PostMapping(value = "/bulk/getNearbyAttractions", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody getNearbyAttractionsBulk(@RequestBody List<String> userNames,
+    		@RequestHeader(value = BulkForwarder.FORWARDED_HEADER, required = false) String forwardedBy) {
+    	return streamBulk("/bulk/getNearbyAttractions", userNames, forwardedBy != null, localNames -> {
+    		Map<String, CompletableFuture<?>> lines = new LinkedHashMap<>();
+    		tourGuideService.getFiveNearestByAttractionsForUsers(localNames).forEach((userName, attractions) ->
+    				lines.put(userName, attractions.handle((nearby, error) -> error == null
+    						? new UserNearbyAttractionsDTO(userName, nearby, null)
+    						: new UserNearbyAttractionsDTO(userName, null, errorMessage(error)))));
+    		return lines;
+    	}, (userName, error) -> new UserNearbyAttractionsDTO(userName, null, error));
+    }
+
+    @PostMapping(value = "/bulk/getRewards", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody getRewardsBulk(@RequestBody List<String> userNames,
+    		@RequestHeader(value = BulkForwarder.FORWARDED_HEADER, required = false) String forwardedBy) {
+    	return streamBulk("/bulk/getRewards", userNames, forwardedBy != null, localNames -> {
+    		Map<String, CompletableFuture<?>> lines = new LinkedHashMap<>();
+    		tourGuideService.getUserRewardsForUsers(localNames).forEach((userName, rewards) ->
+    				lines.put(userName, CompletableFuture.completedFuture(rewards == null
+    						? new UserRewardsDTO(userName, null, "Unknown user: " + userName)
+    						: new UserRewardsDTO(userName, rewards, null))));
+    		return lines;
+    	}, (userName, error) -> new UserRewardsDTO(userName, null, error));
+    }
+
+    /**
+     * Écrit une ligne par utilisateur distinct dès qu'elle est prête, qu'elle soit calculée
+     * localement ou renvoyée par l'instance propriétaire.
+     *
+     * @param path chemin de la requête, repris pour la transmettre
+     * @param local lignes des utilisateurs locaux, à terme
+     * @param errorLine ligne d'erreur d'un utilisateur
+     */
+    private StreamingResponseBody streamBulk(String path, List<String> userNames, boolean forwarded,
+    										 Function<List<String>, Map<String, CompletableFuture<?>>> local,
+    										 BiFunction<String, String, Object> errorLine) {
+    	BulkForwarder.Partition partition = bulkForwarder == null
+    			? new BulkForwarder.Partition(List.copyOf(new LinkedHashSet<>(userNames)), Map.of(), List.of())
+    			: bulkForwarder.partition(userNames, forwarded);
+    	Map<String, CompletableFuture<?>> localLines = local.apply(partition.local());
+    	return output -> {
+    		Set<String> pending = new LinkedHashSet<>(userNames);
+    		BlockingQueue<Lines> completed = new LinkedBlockingQueue<>();
+    		localLines.forEach((userName, line) -> line.thenAccept(
+    				dto -> completed.add(new Lines(List.of(userName), List.of(dto)))));
+    		partition.remote().forEach((owner, names) -> bulkForwarder.forward(owner, path, names)
+    				.whenComplete((forwardedLines, error) -> completed.add(error == null
+    						? new Lines(names, List.copyOf(forwardedLines))
+    						: new Lines(names, names.stream().map(userName -> errorLine.apply(userName,
+    								"Owner node " + owner.id() + " failed: " + errorMessage(error))).toList()))));
+    		for (String userName : partition.misrouted()) {
+    			pending.remove(userName);
+    			writeLine(output, errorLine.apply(userName, "User is owned by node "
+    					+ bulkForwarder.getRouter().ownerOf(userName).id()));
+    		}
+    		long deadline = System.nanoTime() + bulkTimeout.toNanos();
+    		try {
+    			while (!pending.isEmpty()) {
+    				Lines lines = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    				if (lines == null) {
+    					break;
+    				}
+    				pending.removeAll(lines.userNames());
+    				for (Object line : lines.content()) {
+    					writeLine(output, line);
+    				}
+    			}
+    		} catch (InterruptedException e) {
+    			Thread.currentThread().interrupt();
+    			throw new InterruptedIOException("Interrupted while streaming " + path);
+    		}
+    		for (String userName : pending) {
+    			writeLine(output, errorLine.apply(userName, "No answer within " + bulkTimeout.toMillis() + " ms"));
+    		}
+    	};
+    }
+
+    /**
+     * Lignes prêtes pour des utilisateurs : objets à sérialiser, ou lignes JSON déjà écrites
+     * par l'instance propriétaire.
+     */
+    private record Lines(List<String> userNames, List<?> content) {
+    }
+
+    private void writeLine(OutputStream output, Object line) throws IOException {
+    	output.write(line instanceof String json ? json.getBytes(StandardCharsets.UTF_8)
+    			: objectMapper.writeValueAsBytes(line));
+    	output.write('\n');
+    	output.flush();
+    }
+
+    private static String errorMessage(Throwable error) {
+    	Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    	return cause.getMessage();
+    }
+
+    /**
+     * Service distant indisponible sans valeur de repli : la requête est refusée en 503 avec
+     * un délai de nouvelle tentative, pour que le client ralentisse au lieu de la traiter comme
+     * une erreur du serveur.
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<String> handleUpstreamUnavailable(UpstreamUnavailableException e) {
+    	return unavailable(e.getMessage(), e.getRetryAfter());
+    }
+
+    /**
+     * Exécuteur des requêtes saturé : délestage signalé comme tel, en 503.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleRejected(RejectedExecutionException e) {
+    	return unavailable(e.getMessage(), Duration.ofSeconds(1));
+    }
+
+    private static ResponseEntity<String> unavailable(String message, Duration retryAfter) {
+    	return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+    			.header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())))
+    			.body(message);
+    }
+
     private User getUser(String userName) {
     	return tourGuideService.getUser(userName);
     }
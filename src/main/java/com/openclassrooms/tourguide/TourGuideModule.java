@@ -1,28 +1,150 @@
 package com.openclassrooms.tourguide;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
-import com.openclassrooms.tourguide.service.RewardsService;
+import tripPricer.TripPricer;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.cluster.BulkForwarder;
+import com.openclassrooms.tourguide.cluster.FileMembership;
+import com.openclassrooms.tourguide.cluster.InMemoryMembership;
+import com.openclassrooms.tourguide.cluster.MembershipProvider;
+import com.openclassrooms.tourguide.cluster.ShardRouter;
+import com.openclassrooms.tourguide.cluster.ShardRoutingInterceptor;
+import com.openclassrooms.tourguide.executor.TaskExecutors;
+import com.openclassrooms.tourguide.history.MappedLocationStore;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.repository.FileUserRepository;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.repository.UserRepository;
+import com.openclassrooms.tourguide.simulation.SimulatedGpsUtil;
+import com.openclassrooms.tourguide.simulation.SimulatedRewardCentral;
+import com.openclassrooms.tourguide.simulation.SimulatedTripPricer;
+import com.openclassrooms.tourguide.simulation.UpstreamSimulation;
 
 @Configuration
+@EnableConfigurationProperties(TourGuideProperties.class)
 public class TourGuideModule {
 	
 	@Bean
-	public GpsUtil getGpsUtil() {
-		return new GpsUtil();
+	public GpsUtil getGpsUtil(TourGuideProperties properties) {
+		TourGuideProperties.Simulation simulation = properties.getSimulation();
+		if (!simulation.isEnabled()) {
+			return new GpsUtil();
+		}
+		// catalogue lu une fois dans la bibliothèque : identifiants stables d'un appel à l'autre
+		return new SimulatedGpsUtil(new UpstreamSimulation("gpsUtil", simulation.getGps()),
+				new GpsUtil().getAttractions());
 	}
 	
 	@Bean
-	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+	public RewardCentral getRewardCentral(TourGuideProperties properties) {
+		TourGuideProperties.Simulation simulation = properties.getSimulation();
+		return simulation.isEnabled()
+				? new SimulatedRewardCentral(new UpstreamSimulation("rewardCentral", simulation.getRewardCentral()))
+				: new RewardCentral();
 	}
-	
+
 	@Bean
-	public RewardCentral getRewardCentral() {
-		return new RewardCentral();
+	public TripPricer getTripPricer(TourGuideProperties properties) {
+		TourGuideProperties.Simulation simulation = properties.getSimulation();
+		return simulation.isEnabled()
+				? new SimulatedTripPricer(new UpstreamSimulation("tripPricer", simulation.getTripPricer()))
+				: new TripPricer();
 	}
-	
+
+	@Bean(destroyMethod = "close")
+	public AttractionCatalog getAttractionCatalog(GpsUtil gpsUtil, TourGuideProperties properties) {
+		return new AttractionCatalog(gpsUtil, properties.getAttractions());
+	}
+
+	@Bean(name = "trackingExecutor")
+	public AsyncTaskExecutor getTrackingExecutor(TourGuideProperties properties) {
+		TourGuideProperties.Executors executors = properties.getExecutors();
+		return monitor("tracking", TaskExecutors.create("tracking", executors.getTracking(), executors.isVirtualThreads()));
+	}
+
+	@Bean(name = "rewardsExecutor")
+	public AsyncTaskExecutor getRewardsExecutor(TourGuideProperties properties) {
+		TourGuideProperties.Executors executors = properties.getExecutors();
+		return monitor("rewards", TaskExecutors.create("rewards", executors.getRewards(), executors.isVirtualThreads()));
+	}
+
+	@Bean
+	public UserRepository getUserRepository(TourGuideProperties properties) throws IOException {
+		TourGuideProperties.Users users = properties.getUsers();
+		return switch (users.getRepository()) {
+			case MEMORY -> new InMemoryUserRepository();
+			case FILE -> new FileUserRepository(Path.of(users.getFile()), users.getLocationRetention());
+		};
+	}
+
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(prefix = "tourguide.history", name = "enabled", havingValue = "true")
+	public MappedLocationStore getLocationHistoryStore(TourGuideProperties properties) throws IOException {
+		return new MappedLocationStore(properties.getHistory());
+	}
+
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(prefix = "tourguide.cluster", name = "enabled", havingValue = "true")
+	public MembershipProvider getMembershipProvider(TourGuideProperties properties) throws IOException {
+		TourGuideProperties.Cluster cluster = properties.getCluster();
+		return switch (cluster.getMembership()) {
+			case MEMORY -> new InMemoryMembership();
+			case FILE -> new FileMembership(cluster);
+		};
+	}
+
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(prefix = "tourguide.cluster", name = "enabled", havingValue = "true")
+	public ShardRouter getShardRouter(MembershipProvider membership, TourGuideProperties properties) {
+		return new ShardRouter(membership, properties.getCluster());
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "tourguide.cluster", name = "enabled", havingValue = "true")
+	public BulkForwarder getBulkForwarder(ShardRouter router, ObjectMapper objectMapper, TourGuideProperties properties) {
+		return new BulkForwarder(router, objectMapper, properties.getBulk().getTimeout());
+	}
+
+	/**
+	 * Redirige vers l'instance propriétaire les requêtes portant sur un utilisateur d'une autre instance.
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "tourguide.cluster", name = "enabled", havingValue = "true")
+	public WebMvcConfigurer getShardRouting(ShardRouter router) {
+		return new WebMvcConfigurer() {
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(new ShardRoutingInterceptor(router));
+			}
+		};
+	}
+
+	/**
+	 * Expose le nombre de threads actifs et la profondeur de la file des pools bornés. En mode
+	 * threads virtuels, l'activité se lit sur les jauges des étapes du traitement par lots.
+	 */
+	private static AsyncTaskExecutor monitor(String name, AsyncTaskExecutor executor) {
+		if (executor instanceof ThreadPoolTaskExecutor pool) {
+			TourGuideMetrics.gauge(TourGuideMetrics.EXECUTOR_ACTIVE, "Threads actifs du pool", pool,
+					ThreadPoolTaskExecutor::getActiveCount, "name", name);
+			TourGuideMetrics.gauge(TourGuideMetrics.EXECUTOR_QUEUED, "Tâches en attente dans la file du pool", pool,
+					ThreadPoolTaskExecutor::getQueueSize, "name", name);
+		}
+		return executor;
+	}
+
 }
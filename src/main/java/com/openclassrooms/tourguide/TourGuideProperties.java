@@ -0,0 +1,802 @@
+package com.openclassrooms.tourguide;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Paramètres applicatifs préfixés par {@code tourguide} dans {@code application.properties}.
+ *
+ * <p>Les valeurs par défaut sont celles utilisées lorsque les services sont instanciés
+ * hors du contexte Spring (tests unitaires).</p>
+ */
+@ConfigurationProperties(prefix = "tourguide")
+public class TourGuideProperties {
+
+	private final Executors executors = new Executors();
+	private final Tracker tracker = new Tracker();
+	private final RewardPointsCache rewardPointsCache = new RewardPointsCache();
+	private final Users users = new Users();
+	private final History history = new History();
+	private final Pipeline pipeline = new Pipeline();
+	private final GpsBatch gpsBatch = new GpsBatch();
+	private final TripDeals tripDeals = new TripDeals();
+	private final Attractions attractions = new Attractions();
+	private final RewardEvents rewardEvents = new RewardEvents();
+	private final Cluster cluster = new Cluster();
+	private final Simulation simulation = new Simulation();
+	private final Resilience resilience = new Resilience();
+	private final Bulk bulk = new Bulk();
+
+	public Executors getExecutors() {
+		return executors;
+	}
+
+	public Tracker getTracker() {
+		return tracker;
+	}
+
+	public RewardPointsCache getRewardPointsCache() {
+		return rewardPointsCache;
+	}
+
+	public Users getUsers() {
+		return users;
+	}
+
+	public TripDeals getTripDeals() {
+		return tripDeals;
+	}
+
+	public Attractions getAttractions() {
+		return attractions;
+	}
+
+	public RewardEvents getRewardEvents() {
+		return rewardEvents;
+	}
+
+	public Cluster getCluster() {
+		return cluster;
+	}
+
+	public Simulation getSimulation() {
+		return simulation;
+	}
+
+	public Resilience getResilience() {
+		return resilience;
+	}
+
+	public Bulk getBulk() {
+		return bulk;
+	}
+
+	/**
+	 * Requêtes groupées {@code /bulk/*}.
+	 */
+	public static class Bulk {
+		// délai de la réponse entière ; les utilisateurs encore en attente reçoivent une ligne d'erreur
+		private Duration timeout = Duration.ofSeconds(30);
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+	}
+
+	/**
+	 * Protection des appels à GpsUtil, RewardCentral et TripPricer.
+	 */
+	public static class Resilience {
+		private final Guard gps = new Guard(Duration.ofSeconds(2));
+		private final Guard rewardCentral = new Guard(Duration.ofSeconds(3));
+		private final Guard tripPricer = new Guard(Duration.ofSeconds(2));
+
+		public Guard getGps() {
+			return gps;
+		}
+
+		public Guard getRewardCentral() {
+			return rewardCentral;
+		}
+
+		public Guard getTripPricer() {
+			return tripPricer;
+		}
+	}
+
+	public static class Guard {
+		// délai de réponse au-delà duquel l'appel est abandonné
+		private Duration timeout;
+		// délai au-delà duquel un second appel identique est lancé ; 0 : pas de second appel
+		private Duration hedgeDelay = Duration.ZERO;
+		// appels en cours au-delà desquels les nouveaux sont refusés, appels abandonnés compris
+		private int maxConcurrentCalls = 2_000;
+		// proportion d'échecs, parmi les derniers appels, qui ouvre le disjoncteur
+		private double failureRateThreshold = 0.5;
+		private int slidingWindowSize = 100;
+		// appels à observer avant de pouvoir ouvrir le disjoncteur
+		private int minimumCalls = 20;
+		// durée pendant laquelle le disjoncteur ouvert refuse les appels avant d'en laisser passer un d'essai
+		private Duration openDuration = Duration.ofSeconds(10);
+
+		public Guard() {
+			this(Duration.ofSeconds(2));
+		}
+
+		public Guard(Duration timeout) {
+			this.timeout = timeout;
+		}
+
+		public Duration getTimeout() {
+			return timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+
+		public Duration getHedgeDelay() {
+			return hedgeDelay;
+		}
+
+		public void setHedgeDelay(Duration hedgeDelay) {
+			this.hedgeDelay = hedgeDelay;
+		}
+
+		public int getMaxConcurrentCalls() {
+			return maxConcurrentCalls;
+		}
+
+		public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+			this.maxConcurrentCalls = maxConcurrentCalls;
+		}
+
+		public double getFailureRateThreshold() {
+			return failureRateThreshold;
+		}
+
+		public void setFailureRateThreshold(double failureRateThreshold) {
+			this.failureRateThreshold = failureRateThreshold;
+		}
+
+		public int getSlidingWindowSize() {
+			return slidingWindowSize;
+		}
+
+		public void setSlidingWindowSize(int slidingWindowSize) {
+			this.slidingWindowSize = slidingWindowSize;
+		}
+
+		public int getMinimumCalls() {
+			return minimumCalls;
+		}
+
+		public void setMinimumCalls(int minimumCalls) {
+			this.minimumCalls = minimumCalls;
+		}
+
+		public Duration getOpenDuration() {
+			return openDuration;
+		}
+
+		public void setOpenDuration(Duration openDuration) {
+			this.openDuration = openDuration;
+		}
+	}
+
+	/**
+	 * Services distants simulés, pour mesurer le comportement de l'application face à des
+	 * latences, des erreurs ou des limitations de débit choisies.
+	 */
+	public static class Simulation {
+		// false : bibliothèques gpsUtil, rewardCentral et tripPricer fournies
+		private boolean enabled = false;
+		private final Upstream gps = new Upstream();
+		private final Upstream rewardCentral = new Upstream();
+		private final Upstream tripPricer = new Upstream();
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Upstream getGps() {
+			return gps;
+		}
+
+		public Upstream getRewardCentral() {
+			return rewardCentral;
+		}
+
+		public Upstream getTripPricer() {
+			return tripPricer;
+		}
+	}
+
+	public static class Upstream {
+		// latence par percentile (p50, p99, p999, max) ; vide : réponse immédiate
+		private Map<String, Duration> latency = new LinkedHashMap<>();
+		// proportion d'appels en échec, entre 0 et 1
+		private double failureRate = 0;
+		// appels acceptés par seconde, au-delà rejetés ; 0 : sans limite
+		private int maxCallsPerSecond = 0;
+
+		public Map<String, Duration> getLatency() {
+			return latency;
+		}
+
+		public void setLatency(Map<String, Duration> latency) {
+			this.latency = latency;
+		}
+
+		public double getFailureRate() {
+			return failureRate;
+		}
+
+		public void setFailureRate(double failureRate) {
+			this.failureRate = failureRate;
+		}
+
+		public int getMaxCallsPerSecond() {
+			return maxCallsPerSecond;
+		}
+
+		public void setMaxCallsPerSecond(int maxCallsPerSecond) {
+			this.maxCallsPerSecond = maxCallsPerSecond;
+		}
+	}
+
+	public enum MembershipType {
+		// instances d'une même JVM (tests)
+		MEMORY,
+		// répertoire partagé entre les instances
+		FILE
+	}
+
+	/**
+	 * Répartition des utilisateurs entre plusieurs instances par hachage cohérent.
+	 */
+	public static class Cluster {
+		private boolean enabled = false;
+		// identifiant unique de l'instance : lettres, chiffres, '.', '_' et '-'
+		private String nodeId = "node-1";
+		// adresse de l'instance, vers laquelle les autres redirigent ses utilisateurs
+		private String url = "http://localhost:8080";
+		private MembershipType membership = MembershipType.FILE;
+		// répertoire partagé lorsque membership vaut FILE
+		private String directory = "data/cluster";
+		private Duration heartbeatInterval = Duration.ofSeconds(5);
+		// délai sans battement au-delà duquel une instance est considérée comme partie
+		private Duration nodeTimeout = Duration.ofSeconds(15);
+		private int virtualNodes = 128;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getNodeId() {
+			return nodeId;
+		}
+
+		public void setNodeId(String nodeId) {
+			this.nodeId = nodeId;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public void setUrl(String url) {
+			this.url = url;
+		}
+
+		public MembershipType getMembership() {
+			return membership;
+		}
+
+		public void setMembership(MembershipType membership) {
+			this.membership = membership;
+		}
+
+		public String getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		public Duration getHeartbeatInterval() {
+			return heartbeatInterval;
+		}
+
+		public void setHeartbeatInterval(Duration heartbeatInterval) {
+			this.heartbeatInterval = heartbeatInterval;
+		}
+
+		public Duration getNodeTimeout() {
+			return nodeTimeout;
+		}
+
+		public void setNodeTimeout(Duration nodeTimeout) {
+			this.nodeTimeout = nodeTimeout;
+		}
+
+		public int getVirtualNodes() {
+			return virtualNodes;
+		}
+
+		public void setVirtualNodes(int virtualNodes) {
+			this.virtualNodes = virtualNodes;
+		}
+	}
+
+	/**
+	 * Calcul des récompenses déclenché par les nouvelles localisations, hors du suivi.
+	 */
+	public static class RewardEvents {
+		// false : récompenses calculées dans le suivi, avant de passer à l'utilisateur suivant
+		private boolean enabled = false;
+		// nombre maximal d'utilisateurs en attente ; au-delà, le suivi attend
+		private int capacity = 100_000;
+		private int workers = Runtime.getRuntime().availableProcessors() * 4;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getCapacity() {
+			return capacity;
+		}
+
+		public void setCapacity(int capacity) {
+			this.capacity = capacity;
+		}
+
+		public int getWorkers() {
+			return workers;
+		}
+
+		public void setWorkers(int workers) {
+			this.workers = workers;
+		}
+	}
+
+	/**
+	 * Catalogue des attractions et recherche des plus proches, précalculée par cellule de la grille.
+	 */
+	public static class Attractions {
+		// relecture périodique du catalogue GpsUtil ; désactivée si nulle
+		private Duration refreshInterval = Duration.ZERO;
+		// taille des cellules en degrés (0.1 : environ 7 miles de côté à l'équateur)
+		private double nearestCellSize = 0.1;
+		private long nearestMaximumCells = 100_000;
+
+		public Duration getRefreshInterval() {
+			return refreshInterval;
+		}
+
+		public void setRefreshInterval(Duration refreshInterval) {
+			this.refreshInterval = refreshInterval;
+		}
+
+		public double getNearestCellSize() {
+			return nearestCellSize;
+		}
+
+		public void setNearestCellSize(double nearestCellSize) {
+			this.nearestCellSize = nearestCellSize;
+		}
+
+		public long getNearestMaximumCells() {
+			return nearestMaximumCells;
+		}
+
+		public void setNearestMaximumCells(long nearestMaximumCells) {
+			this.nearestMaximumCells = nearestMaximumCells;
+		}
+	}
+
+	/**
+	 * Cache des offres de voyage TripPricer, par utilisateur et profil de préférences.
+	 */
+	public static class TripDeals {
+		private long maximumSize = 100_000;
+		// un utilisateur dont les offres n'ont pas été consultées depuis cette durée sort du cache
+		private Duration activeWindow = Duration.ofHours(1);
+		// actualisation en tâche de fond des offres des utilisateurs actifs
+		private boolean precompute = false;
+		private Duration refreshInterval = Duration.ofMinutes(10);
+
+		public long getMaximumSize() {
+			return maximumSize;
+		}
+
+		public void setMaximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+		}
+
+		public Duration getActiveWindow() {
+			return activeWindow;
+		}
+
+		public void setActiveWindow(Duration activeWindow) {
+			this.activeWindow = activeWindow;
+		}
+
+		public boolean isPrecompute() {
+			return precompute;
+		}
+
+		public void setPrecompute(boolean precompute) {
+			this.precompute = precompute;
+		}
+
+		public Duration getRefreshInterval() {
+			return refreshInterval;
+		}
+
+		public void setRefreshInterval(Duration refreshInterval) {
+			this.refreshInterval = refreshInterval;
+		}
+	}
+
+	public GpsBatch getGpsBatch() {
+		return gpsBatch;
+	}
+
+	/**
+	 * Regroupement des demandes de localisation adressées à GpsUtil.
+	 */
+	public static class GpsBatch {
+		private Duration window = Duration.ofMillis(5);
+		private int maxBatchSize = 1_000;
+		private int parallelism = 500;
+
+		public Duration getWindow() {
+			return window;
+		}
+
+		public void setWindow(Duration window) {
+			this.window = window;
+		}
+
+		public int getMaxBatchSize() {
+			return maxBatchSize;
+		}
+
+		public void setMaxBatchSize(int maxBatchSize) {
+			this.maxBatchSize = maxBatchSize;
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+	}
+
+	public Pipeline getPipeline() {
+		return pipeline;
+	}
+
+	public static class Pipeline {
+		// nombre d'utilisateurs lus à la fois dans la source
+		private int chunkSize = 1_000;
+		// nombre maximal de tâches soumises et non terminées
+		private int maxInFlight = 2_000;
+		// nombre maximal de tentatives par utilisateur (1 : aucune reprise)
+		private int maxAttempts = 2;
+		private final Stages stages = new Stages();
+
+		public int getChunkSize() {
+			return chunkSize;
+		}
+
+		public void setChunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
+		public int getMaxInFlight() {
+			return maxInFlight;
+		}
+
+		public void setMaxInFlight(int maxInFlight) {
+			this.maxInFlight = maxInFlight;
+		}
+
+		public int getMaxAttempts() {
+			return maxAttempts;
+		}
+
+		public void setMaxAttempts(int maxAttempts) {
+			this.maxAttempts = maxAttempts;
+		}
+
+		public Stages getStages() {
+			return stages;
+		}
+	}
+
+	/**
+	 * Nombre maximal d'exécutions simultanées de chaque étape du suivi.
+	 */
+	public static class Stages {
+		private int gps = 1_000;
+		private int distance = Runtime.getRuntime().availableProcessors() * 2;
+		private int rewardPoints = 1_000;
+
+		public int getGps() {
+			return gps;
+		}
+
+		public void setGps(int gps) {
+			this.gps = gps;
+		}
+
+		public int getDistance() {
+			return distance;
+		}
+
+		public void setDistance(int distance) {
+			this.distance = distance;
+		}
+
+		public int getRewardPoints() {
+			return rewardPoints;
+		}
+
+		public void setRewardPoints(int rewardPoints) {
+			this.rewardPoints = rewardPoints;
+		}
+	}
+
+	public History getHistory() {
+		return history;
+	}
+
+	public enum RepositoryType {
+		MEMORY, FILE
+	}
+
+	public enum BootstrapMode {
+		// utilisateurs chargés avant la fin du démarrage
+		EAGER,
+		// utilisateurs chargés en arrière-plan ; le service est signalé prêt à la fin du chargement
+		BACKGROUND
+	}
+
+	public static class History {
+		// active l'historique persistant des localisations (fichiers projetés en mémoire)
+		private boolean enabled = false;
+		private String directory = "data/history";
+		private int recordsPerBlock = 128;
+		private int blocksPerFile = 16_384;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		public int getRecordsPerBlock() {
+			return recordsPerBlock;
+		}
+
+		public void setRecordsPerBlock(int recordsPerBlock) {
+			this.recordsPerBlock = recordsPerBlock;
+		}
+
+		public int getBlocksPerFile() {
+			return blocksPerFile;
+		}
+
+		public void setBlocksPerFile(int blocksPerFile) {
+			this.blocksPerFile = blocksPerFile;
+		}
+	}
+
+	public static class Users {
+		// nombre maximal de localisations conservées par utilisateur ; les plus anciennes sont abandonnées
+		private int locationRetention = Integer.MAX_VALUE;
+		private RepositoryType repository = RepositoryType.MEMORY;
+		// journal des utilisateurs lorsque repository vaut FILE
+		private String file = "data/users.dat";
+		private BootstrapMode bootstrap = BootstrapMode.EAGER;
+		// nombre d'utilisateurs internes générés par tâche
+		private int bootstrapChunkSize = 5_000;
+
+		public BootstrapMode getBootstrap() {
+			return bootstrap;
+		}
+
+		public void setBootstrap(BootstrapMode bootstrap) {
+			this.bootstrap = bootstrap;
+		}
+
+		public int getBootstrapChunkSize() {
+			return bootstrapChunkSize;
+		}
+
+		public void setBootstrapChunkSize(int bootstrapChunkSize) {
+			this.bootstrapChunkSize = bootstrapChunkSize;
+		}
+
+		public RepositoryType getRepository() {
+			return repository;
+		}
+
+		public void setRepository(RepositoryType repository) {
+			this.repository = repository;
+		}
+
+		public String getFile() {
+			return file;
+		}
+
+		public void setFile(String file) {
+			this.file = file;
+		}
+
+		public int getLocationRetention() {
+			return locationRetention;
+		}
+
+		public void setLocationRetention(int locationRetention) {
+			this.locationRetention = locationRetention;
+		}
+	}
+
+	public static class RewardPointsCache {
+		private long maximumSize = 100_000;
+		private Duration timeToLive = Duration.ofMinutes(30);
+
+		public long getMaximumSize() {
+			return maximumSize;
+		}
+
+		public void setMaximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+		}
+
+		public Duration getTimeToLive() {
+			return timeToLive;
+		}
+
+		public void setTimeToLive(Duration timeToLive) {
+			this.timeToLive = timeToLive;
+		}
+	}
+
+	public static class Tracker {
+		private Duration interval = Duration.ofMinutes(5);
+		private int chunkSize = 10_000;
+		// suivi par lots de demandes regroupées (trackUserLocationsBatch) plutôt qu'un appel bloquant par utilisateur
+		private boolean batched = false;
+
+		public Duration getInterval() {
+			return interval;
+		}
+
+		public void setInterval(Duration interval) {
+			this.interval = interval;
+		}
+
+		public int getChunkSize() {
+			return chunkSize;
+		}
+
+		public void setChunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
+		public boolean isBatched() {
+			return batched;
+		}
+
+		public void setBatched(boolean batched) {
+			this.batched = batched;
+		}
+	}
+
+	public static class Executors {
+		// exécute les tâches de suivi et de récompenses sur des threads virtuels plutôt que sur des pools
+		private boolean virtualThreads = false;
+		private final Pool tracking = new Pool();
+		private final Pool rewards = new Pool();
+		// traitements déportés des requêtes HTTP, toujours sur threads virtuels : seul maxConcurrency s'applique
+		private final Pool requests = new Pool();
+
+		public boolean isVirtualThreads() {
+			return virtualThreads;
+		}
+
+		public void setVirtualThreads(boolean virtualThreads) {
+			this.virtualThreads = virtualThreads;
+		}
+
+		public Pool getTracking() {
+			return tracking;
+		}
+
+		public Pool getRewards() {
+			return rewards;
+		}
+
+		public Pool getRequests() {
+			return requests;
+		}
+	}
+
+	/**
+	 * Dimensionnement d'un pool de threads borné, ou limite de concurrence en mode threads virtuels.
+	 */
+	public static class Pool {
+		private int poolSize = Runtime.getRuntime().availableProcessors() * 4;
+		private int queueCapacity = 10_000;
+		private int awaitTerminationSeconds = 30;
+		private int maxConcurrency = 1_000;
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public int getAwaitTerminationSeconds() {
+			return awaitTerminationSeconds;
+		}
+
+		public void setAwaitTerminationSeconds(int awaitTerminationSeconds) {
+			this.awaitTerminationSeconds = awaitTerminationSeconds;
+		}
+
+		public int getMaxConcurrency() {
+			return maxConcurrency;
+		}
+
+		public void setMaxConcurrency(int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+
+/**
+ * Catalogue des attractions, lu une seule fois auprès de {@link GpsUtil} puis conservé sous
+ * forme d'un instantané immuable et versionné.
+ *
+ * <p>Le catalogue est lu à la première consultation, puis relu à la demande
+ * ({@link #refresh()}) ou périodiquement si {@code tourguide.attractions.refresh-interval}
+ * est positif. Un nouveau catalogue remplace l'instantané courant d'un seul coup : un calcul
+ * qui a obtenu un instantané le conserve jusqu'au bout, avec son index et ses réponses
+ * précalculées, sans jamais mélanger deux versions.</p>
+ *
+ * <p>GpsUtil attribuant un nouvel identifiant aux attractions à chaque lecture, une
+ * attraction inchangée (même nom, même lieu, mêmes coordonnées) garde d'une version à
+ * l'autre l'instance, donc l'identifiant, de la version précédente : les récompenses déjà
+ * obtenues restent reconnues. Une relecture sans changement ne crée pas de nouvelle
+ * version.</p>
+ */
+public class AttractionCatalog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+
+    private final GpsUtil gpsUtil;
+    private final TourGuideProperties.Attractions properties;
+    private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+    // actualisation périodique, null si elle n'est pas activée
+    private final ScheduledExecutorService refresher;
+    private volatile Snapshot snapshot;
+
+    public AttractionCatalog(GpsUtil gpsUtil, TourGuideProperties.Attractions properties) {
+        this.gpsUtil = gpsUtil;
+        this.properties = properties;
+        Duration interval = properties.getRefreshInterval();
+        this.refresher = interval.isPositive() ? scheduleRefresh(interval) : null;
+    }
+
+    /**
+     * Retourne l'instantané courant du catalogue, lu auprès de GpsUtil à la première
+     * consultation.
+     */
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = newSnapshot(1, gpsUtil.getAttractions());
+                    snapshot = current;
+                    logger.info("Attraction catalog loaded: {} attractions.", current.attractions().size());
+                }
+            }
+        }
+        return current;
+    }
+
+    public long getVersion() {
+        return current().version();
+    }
+
+    /**
+     * Relit le catalogue auprès de GpsUtil et publie une nouvelle version s'il a changé.
+     *
+     * @return {@code true} si une nouvelle version a été publiée
+     */
+    public synchronized boolean refresh() {
+        Snapshot previous = snapshot;
+        List<Attraction> loaded = gpsUtil.getAttractions();
+        if (previous == null) {
+            snapshot = newSnapshot(1, loaded);
+            return true;
+        }
+        List<Attraction> attractions = reuseUnchanged(previous.attractions(), loaded);
+        if (attractions.equals(previous.attractions())) {
+            return false;
+        }
+        Snapshot next = newSnapshot(previous.version() + 1, attractions);
+        snapshot = next;
+        logger.info("Attraction catalog updated to version {}: {} attractions.", next.version(), attractions.size());
+        // prévenus après la publication : qui observe leur effet voit déjà la nouvelle version
+        listeners.forEach(listener -> listener.accept(next));
+        return true;
+    }
+
+    /**
+     * Enregistre un observateur appelé après la publication de chaque nouvelle version.
+     */
+    public void addListener(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    private Snapshot newSnapshot(long version, List<Attraction> attractions) {
+        AttractionIndex index = new AttractionIndex(attractions);
+        NearestAttractionTable nearest = new NearestAttractionTable(index, properties.getNearestCellSize(),
+                properties.getNearestMaximumCells());
+        return new Snapshot(version, index, nearest);
+    }
+
+    private static List<Attraction> reuseUnchanged(List<Attraction> previous, List<Attraction> loaded) {
+        Map<String, Attraction> byName = new HashMap<>();
+        previous.forEach(attraction -> byName.put(attraction.attractionName, attraction));
+        List<Attraction> result = new ArrayList<>(loaded.size());
+        for (Attraction attraction : loaded) {
+            Attraction known = byName.get(attraction.attractionName);
+            result.add(known != null && sameAttraction(known, attraction) ? known : attraction);
+        }
+        return result;
+    }
+
+    private static boolean sameAttraction(Attraction a, Attraction b) {
+        return Objects.equals(a.city, b.city) && Objects.equals(a.state, b.state)
+                && a.latitude == b.latitude && a.longitude == b.longitude;
+    }
+
+    private ScheduledExecutorService scheduleRefresh(Duration interval) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "attraction-catalog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                // la version courante reste en service jusqu'à la prochaine tentative
+                logger.warn("Attraction catalog refresh failed.", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    /**
+     * Version immuable du catalogue, avec son index spatial et ses réponses précalculées.
+     */
+    public record Snapshot(long version, AttractionIndex index, NearestAttractionTable nearest) {
+
+        public List<Attraction> attractions() {
+            return index.getAttractions();
+        }
+    }
+}
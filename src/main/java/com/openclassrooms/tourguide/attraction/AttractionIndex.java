@@ -0,0 +1,240 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Index spatial immuable des attractions, construit une seule fois à partir du catalogue.
+ *
+ * <p>Les attractions sont rangées dans une grille régulière latitude/longitude. Une requête
+ * ne parcourt que les cellules recouvrant la zone de recherche, puis vérifie la distance
+ * exacte des attractions qu'elles contiennent : le résultat est donc identique à un
+ * parcours complet de la liste, sans avoir à calculer la distance de chaque attraction.</p>
+ *
+ * <p>La position de chaque attraction sur la sphère unité est précalculée à la construction.
+ * Les comparaisons de distance se font ensuite sur le carré de la corde, sans fonction
+ * trigonométrique ; seules les attractions situées à la limite du rayon de recherche sont
+ * départagées par le calcul exact de {@link GeoDistance#miles}.</p>
+ */
+public class AttractionIndex {
+    private static final double DEFAULT_CELL_SIZE_DEGREES = 1.0;
+    private static final double INITIAL_NEAREST_RADIUS_MILES = 50;
+    // marge d'arrondi en deçà de laquelle la comparaison par corde est confirmée par le calcul exact
+    private static final double CHORD_SQUARED_TOLERANCE = 1e-12;
+
+    private final List<Attraction> attractions;
+    private final double cellSizeDegrees;
+    private final int rows;
+    private final int columns;
+    private final Map<Integer, List<IndexedAttraction>> cells = new HashMap<>();
+
+    public AttractionIndex(List<Attraction> attractions) {
+        this(attractions, DEFAULT_CELL_SIZE_DEGREES);
+    }
+
+    public AttractionIndex(List<Attraction> attractions, double cellSizeDegrees) {
+        if (!(cellSizeDegrees > 0) || cellSizeDegrees > 180) {
+            throw new IllegalArgumentException("cellSizeDegrees must be in ]0, 180]: " + cellSizeDegrees);
+        }
+        this.attractions = List.copyOf(attractions);
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.rows = (int) Math.ceil(180 / cellSizeDegrees);
+        this.columns = (int) Math.ceil(360 / cellSizeDegrees);
+
+        for (Attraction attraction : this.attractions) {
+            int cell = cellOf(rowOf(attraction.latitude), columnOf(attraction.longitude));
+            cells.computeIfAbsent(cell, c -> new ArrayList<>()).add(new IndexedAttraction(attraction));
+        }
+    }
+
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+
+    public int size() {
+        return attractions.size();
+    }
+
+    /**
+     * Retourne les attractions situées à {@code miles} miles ou moins de la localisation.
+     *
+     * <p>Seules les cellules de la grille intersectant le rectangle englobant le cercle de
+     * recherche sont parcourues.</p>
+     *
+     * @param location la localisation de référence
+     * @param miles le rayon de recherche en miles
+     * @return les attractions dans le rayon, dans un ordre non spécifié
+     */
+    public List<Attraction> findWithinMiles(Location location, double miles) {
+        List<Attraction> result = new ArrayList<>();
+        for (Candidate candidate : findCandidates(location, miles)) {
+            result.add(candidate.attraction());
+        }
+        return result;
+    }
+
+    /**
+     * Retourne les {@code k} attractions les plus proches de la localisation, triées par
+     * distance croissante, quelle que soit leur distance.
+     *
+     * <p>Le rayon de recherche est doublé jusqu'à contenir au moins {@code k} attractions :
+     * toute attraction hors du rayon est plus éloignée que celles qu'il contient.</p>
+     *
+     * @param location la localisation de référence
+     * @param k le nombre d'attractions souhaité
+     * @return au plus {@code k} attractions triées par distance croissante
+     */
+    public List<Attraction> findNearest(Location location, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        double radius = INITIAL_NEAREST_RADIUS_MILES;
+        List<Candidate> candidates = findCandidates(location, radius);
+        while (candidates.size() < k && radius < GeoDistance.HALF_CIRCUMFERENCE_MILES) {
+            radius *= 2;
+            candidates = findCandidates(location, radius);
+        }
+
+        // le carré de la corde croît avec la distance : il suffit pour trier
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble(Candidate::chordSquared))
+                .limit(k)
+                .map(Candidate::attraction)
+                .toList();
+    }
+
+    private List<Candidate> findCandidates(Location location, double miles) {
+        List<Candidate> result = new ArrayList<>();
+        if (miles < 0) {
+            return result;
+        }
+        Query query = new Query(location, miles);
+        if (miles >= GeoDistance.HALF_CIRCUMFERENCE_MILES) {
+            collectWithin(query, 0, rows - 1, 0, columns - 1, result);
+            return result;
+        }
+
+        double radiusDegrees = GeoDistance.milesToDegrees(miles);
+        double minLatitude = location.latitude - radiusDegrees;
+        double maxLatitude = location.latitude + radiusDegrees;
+        int firstRow = rowOf(Math.max(minLatitude, -90));
+        int lastRow = rowOf(Math.min(maxLatitude, 90));
+
+        if (minLatitude <= -90 || maxLatitude >= 90) {
+            collectWithin(query, firstRow, lastRow, 0, columns - 1, result);
+            return result;
+        }
+        // Demi-largeur en longitude du rectangle englobant (le cercle ne contient aucun pôle).
+        double ratio = Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(location.latitude));
+        if (ratio >= 1) {
+            collectWithin(query, firstRow, lastRow, 0, columns - 1, result);
+            return result;
+        }
+        double halfWidth = Math.toDegrees(Math.asin(ratio));
+        double west = location.longitude - halfWidth;
+        double east = location.longitude + halfWidth;
+        if (west < -180) {
+            collectWithin(query, firstRow, lastRow, columnOf(west + 360), columns - 1, result);
+            collectWithin(query, firstRow, lastRow, 0, columnOf(east), result);
+        } else if (east > 180) {
+            collectWithin(query, firstRow, lastRow, columnOf(west), columns - 1, result);
+            collectWithin(query, firstRow, lastRow, 0, columnOf(east - 360), result);
+        } else {
+            collectWithin(query, firstRow, lastRow, columnOf(west), columnOf(east), result);
+        }
+        return result;
+    }
+
+    private void collectWithin(Query query, int firstRow, int lastRow,
+                               int firstColumn, int lastColumn, List<Candidate> result) {
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                List<IndexedAttraction> cell = cells.get(cellOf(row, column));
+                if (cell == null) {
+                    continue;
+                }
+                for (IndexedAttraction indexed : cell) {
+                    double chordSquared = indexed.chordSquaredTo(query);
+                    if (query.isWithin(indexed.attraction, chordSquared)) {
+                        result.add(new Candidate(indexed.attraction, chordSquared));
+                    }
+                }
+            }
+        }
+    }
+
+    private int rowOf(double latitude) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((latitude + 90) / cellSizeDegrees)));
+    }
+
+    private int columnOf(double longitude) {
+        return Math.min(columns - 1, Math.max(0, (int) Math.floor((longitude + 180) / cellSizeDegrees)));
+    }
+
+    private int cellOf(int row, int column) {
+        return row * columns + column;
+    }
+
+    /**
+     * Attraction accompagnée de sa position précalculée sur la sphère unité.
+     */
+    private static final class IndexedAttraction {
+        private final Attraction attraction;
+        private final double x;
+        private final double y;
+        private final double z;
+
+        private IndexedAttraction(Attraction attraction) {
+            double[] vector = GeoDistance.toUnitVector(attraction);
+            this.attraction = attraction;
+            this.x = vector[0];
+            this.y = vector[1];
+            this.z = vector[2];
+        }
+
+        private double chordSquaredTo(Query query) {
+            return GeoDistance.chordSquared(x, y, z, query.x, query.y, query.z);
+        }
+    }
+
+    /**
+     * Localisation recherchée et rayon, convertis une seule fois pour toute la requête.
+     */
+    private static final class Query {
+        private final Location location;
+        private final double miles;
+        private final double thresholdChordSquared;
+        private final double x;
+        private final double y;
+        private final double z;
+
+        private Query(Location location, double miles) {
+            double[] vector = GeoDistance.toUnitVector(location);
+            this.location = location;
+            this.miles = miles;
+            this.thresholdChordSquared = GeoDistance.milesToChordSquared(miles);
+            this.x = vector[0];
+            this.y = vector[1];
+            this.z = vector[2];
+        }
+
+        private boolean isWithin(Attraction attraction, double chordSquared) {
+            if (chordSquared < thresholdChordSquared - CHORD_SQUARED_TOLERANCE) {
+                return true;
+            }
+            if (chordSquared > thresholdChordSquared + CHORD_SQUARED_TOLERANCE) {
+                return false;
+            }
+            return !(GeoDistance.miles(attraction, location) > miles);
+        }
+    }
+
+    private record Candidate(Attraction attraction, double chordSquared) {
+    }
+}
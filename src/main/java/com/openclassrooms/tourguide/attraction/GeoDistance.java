@@ -0,0 +1,96 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Location;
+
+/**
+ * Calculs de distance entre deux coordonnées GPS, exprimés en miles terrestres.
+ *
+ * <p>Une minute d'arc correspond à un mille nautique : un degré d'arc vaut donc
+ * {@code 60 * STATUTE_MILES_PER_NAUTICAL_MILE} miles.</p>
+ *
+ * <p>La distance exacte est calculée par la formule de haversine, stable numériquement
+ * même pour des points très proches (contrairement à la loi des cosinus). Pour les
+ * comparaisons répétées, un point peut être converti une fois pour toutes en vecteur
+ * unitaire ({@link #toUnitVector(Location)}) : la distance entre deux vecteurs se compare
+ * alors via le carré de la corde ({@link #chordSquared}), sans aucune fonction
+ * trigonométrique.</p>
+ */
+public final class GeoDistance {
+    public static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+    public static final double MILES_PER_DEGREE = 60 * STATUTE_MILES_PER_NAUTICAL_MILE;
+    public static final double HALF_CIRCUMFERENCE_MILES = 180 * MILES_PER_DEGREE;
+    private static final double MILES_PER_RADIAN = Math.toDegrees(MILES_PER_DEGREE);
+    // carré de la corde entre deux points antipodaux (diamètre de la sphère unité au carré)
+    private static final double MAX_CHORD_SQUARED = 4;
+
+    private GeoDistance() {
+    }
+
+    /**
+     * Distance orthodromique (formule de haversine) entre deux localisations.
+     *
+     * @param loc1 première localisation
+     * @param loc2 seconde localisation
+     * @return la distance en miles terrestres
+     */
+    public static double miles(Location loc1, Location loc2) {
+        double lat1 = Math.toRadians(loc1.latitude);
+        double lat2 = Math.toRadians(loc2.latitude);
+        double sinHalfDeltaLat = Math.sin((lat2 - lat1) / 2);
+        double sinHalfDeltaLon = Math.sin(Math.toRadians(loc2.longitude - loc1.longitude) / 2);
+
+        double a = sinHalfDeltaLat * sinHalfDeltaLat
+                + Math.cos(lat1) * Math.cos(lat2) * sinHalfDeltaLon * sinHalfDeltaLon;
+        double angle = 2 * Math.asin(Math.sqrt(Math.min(1, a)));
+
+        return MILES_PER_RADIAN * angle;
+    }
+
+    /**
+     * Convertit une distance en miles en angle d'arc exprimé en degrés.
+     */
+    public static double milesToDegrees(double miles) {
+        return miles / MILES_PER_DEGREE;
+    }
+
+    /**
+     * Coordonnées cartésiennes {x, y, z} du point sur la sphère unité.
+     */
+    public static double[] toUnitVector(Location location) {
+        double lat = Math.toRadians(location.latitude);
+        double lon = Math.toRadians(location.longitude);
+        double cosLat = Math.cos(lat);
+        return new double[] {cosLat * Math.cos(lon), cosLat * Math.sin(lon), Math.sin(lat)};
+    }
+
+    /**
+     * Carré de la corde entre deux points de la sphère unité : fonction croissante de la
+     * distance orthodromique, utilisable directement pour trier ou comparer des distances.
+     */
+    public static double chordSquared(double x1, double y1, double z1, double x2, double y2, double z2) {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        double dz = z1 - z2;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Carré de la corde correspondant à une distance en miles, pour comparer une distance
+     * à un seuil sans calcul trigonométrique par paire de points.
+     */
+    public static double milesToChordSquared(double miles) {
+        if (miles >= HALF_CIRCUMFERENCE_MILES) {
+            return MAX_CHORD_SQUARED;
+        }
+        double halfChord = Math.sin(Math.max(0, miles) / MILES_PER_RADIAN / 2);
+        return 4 * halfChord * halfChord;
+    }
+
+    /**
+     * Distance en miles correspondant à un carré de corde.
+     */
+    public static double chordSquaredToMiles(double chordSquared) {
+        double halfChord = Math.sqrt(Math.min(MAX_CHORD_SQUARED, chordSquared)) / 2;
+        return MILES_PER_RADIAN * 2 * Math.asin(Math.min(1, halfChord));
+    }
+}
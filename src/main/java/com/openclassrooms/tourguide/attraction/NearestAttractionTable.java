@@ -0,0 +1,163 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Réponses précalculées à la recherche des {@code k} attractions les plus proches, par
+ * cellule d'une grille latitude/longitude de taille configurable.
+ *
+ * <p>Pour chaque cellule est retenu, une fois pour toutes, l'ensemble réduit des attractions
+ * pouvant figurer parmi les {@code k} plus proches d'un point quelconque de la cellule. Soit
+ * {@code r} la distance du centre de la cellule à son coin le plus éloigné et {@code d} la
+ * distance du centre à sa {@code k}-ième attraction la plus proche : en tout point de la
+ * cellule, ces {@code k} attractions sont à moins de {@code d + r}, alors qu'une attraction
+ * à plus de {@code d + 2r} du centre est à plus de {@code d + r} de ce point. Seules les
+ * attractions à {@code d + 2r} ou moins du centre sont donc candidates, et une requête se
+ * contente de les reclasser : le résultat est identique à
+ * {@link AttractionIndex#findNearest}, pour un coût indépendant de la taille du catalogue.</p>
+ *
+ * <p>Les cellules sont calculées à leur première consultation et conservées dans la limite
+ * d'un nombre maximal de cellules. La table est liée à un index, donc à une version du
+ * catalogue : un nouveau catalogue nécessite une nouvelle table.</p>
+ */
+public class NearestAttractionTable {
+    // marge relative couvrant les erreurs d'arrondi sur le rayon des cellules
+    private static final double RADIUS_TOLERANCE = 1e-9;
+
+    private final AttractionIndex index;
+    private final double cellSizeDegrees;
+    private final int columns;
+    private final Cache<CellKey, Cell> cells;
+
+    /**
+     * @param index index des attractions du catalogue
+     * @param cellSizeDegrees taille des cellules en degrés de latitude et de longitude
+     * @param maximumCells nombre maximal de cellules conservées
+     */
+    public NearestAttractionTable(AttractionIndex index, double cellSizeDegrees, long maximumCells) {
+        if (!(cellSizeDegrees > 0) || cellSizeDegrees > 90) {
+            throw new IllegalArgumentException("cellSizeDegrees must be in ]0, 90]: " + cellSizeDegrees);
+        }
+        this.index = index;
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.columns = (int) Math.ceil(360 / cellSizeDegrees);
+        this.cells = Caffeine.newBuilder().maximumSize(maximumCells).build();
+    }
+
+    public AttractionIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Nombre approximatif de cellules calculées et conservées.
+     */
+    public long getCellCount() {
+        return cells.estimatedSize();
+    }
+
+    /**
+     * Retourne les {@code k} attractions les plus proches de la localisation, triées par
+     * distance croissante, comme {@link AttractionIndex#findNearest}.
+     *
+     * @param location la localisation de référence
+     * @param k le nombre d'attractions souhaité
+     * @return au plus {@code k} attractions triées par distance croissante
+     */
+    public List<Attraction> findNearest(Location location, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        int row = (int) Math.floor((location.latitude + 90) / cellSizeDegrees);
+        int column = Math.floorMod((int) Math.floor((location.longitude + 180) / cellSizeDegrees), columns);
+        Cell cell = cells.get(new CellKey(row, column, k), this::computeCell);
+        return cell.rank(location, k);
+    }
+
+    private Cell computeCell(CellKey key) {
+        double south = Math.max(-90, key.row() * cellSizeDegrees - 90);
+        double north = Math.min(90, (key.row() + 1) * cellSizeDegrees - 90);
+        double west = key.column() * cellSizeDegrees - 180;
+        double east = Math.min(180, (key.column() + 1) * cellSizeDegrees - 180);
+        Location center = new Location((south + north) / 2, (west + east) / 2);
+        if (south <= -90 || north >= 90) {
+            // cellule touchant un pôle : son coin le plus éloigné n'est pas un de ses sommets
+            return new Cell(index.getAttractions());
+        }
+
+        // le point d'une cellule (hors pôle) le plus éloigné de son centre est l'un de ses coins
+        double radius = 0;
+        for (double latitude : new double[] {south, north}) {
+            for (double longitude : new double[] {west, east}) {
+                radius = Math.max(radius, GeoDistance.miles(center, new Location(latitude, longitude)));
+            }
+        }
+        radius *= 1 + RADIUS_TOLERANCE;
+
+        List<Attraction> nearest = index.findNearest(center, key.k());
+        if (nearest.size() < key.k()) {
+            return new Cell(index.getAttractions());
+        }
+        double kthDistance = GeoDistance.miles(center, nearest.get(nearest.size() - 1));
+        return new Cell(index.findWithinMiles(center, kthDistance + 2 * radius));
+    }
+
+    private record CellKey(int row, int column, int k) {
+    }
+
+    /**
+     * Attractions candidates d'une cellule, avec leur position précalculée sur la sphère unité.
+     */
+    private static final class Cell {
+        private final Attraction[] attractions;
+        private final double[] vectors;
+
+        private Cell(List<Attraction> candidates) {
+            this.attractions = candidates.toArray(Attraction[]::new);
+            this.vectors = new double[attractions.length * 3];
+            for (int i = 0; i < attractions.length; i++) {
+                double[] vector = GeoDistance.toUnitVector(attractions[i]);
+                System.arraycopy(vector, 0, vectors, i * 3, 3);
+            }
+        }
+
+        /**
+         * Sélectionne par insertion les {@code k} candidates les plus proches : le nombre de
+         * candidates d'une cellule est de l'ordre de {@code k}.
+         */
+        private List<Attraction> rank(Location location, int k) {
+            double[] query = GeoDistance.toUnitVector(location);
+            int limit = Math.min(k, attractions.length);
+            int[] best = new int[limit];
+            double[] bestChords = new double[limit];
+            int size = 0;
+            for (int i = 0; i < attractions.length; i++) {
+                double chord = GeoDistance.chordSquared(vectors[i * 3], vectors[i * 3 + 1], vectors[i * 3 + 2],
+                        query[0], query[1], query[2]);
+                if (size == limit && !(chord < bestChords[size - 1])) {
+                    continue;
+                }
+                int position = size < limit ? size++ : size - 1;
+                // à distance égale, la candidate rencontrée en premier reste devant
+                while (position > 0 && bestChords[position - 1] > chord) {
+                    best[position] = best[position - 1];
+                    bestChords[position] = bestChords[position - 1];
+                    position--;
+                }
+                best[position] = i;
+                bestChords[position] = chord;
+            }
+            List<Attraction> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(attractions[best[i]]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Répartition des requêtes groupées ({@code /bulk/*}) entre les instances propriétaires des
+ * utilisateurs.
+ *
+ * <p>Les noms reçus sont regroupés par instance propriétaire ; chaque groupe étranger est
+ * transmis à son instance par la même requête, dont les lignes NDJSON sont renvoyées telles
+ * quelles. Une requête transmise porte l'en-tête {@link #FORWARDED_HEADER} et n'est jamais
+ * transmise de nouveau : si les instances ne s'accordent pas encore sur la composition du
+ * cluster, les utilisateurs qu'elle ne possède pas sont signalés comme mal routés plutôt que
+ * servis depuis une copie locale qui n'est pas suivie.</p>
+ */
+public class BulkForwarder {
+    public static final String FORWARDED_HEADER = "X-TourGuide-Forwarded-By";
+
+    private final ShardRouter router;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final HttpClient client;
+
+    /**
+     * @param router répartition des utilisateurs
+     * @param objectMapper sérialisation du corps des requêtes transmises
+     * @param timeout délai de réponse d'une instance propriétaire
+     */
+    public BulkForwarder(ShardRouter router, ObjectMapper objectMapper, Duration timeout) {
+        this.router = router;
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    /**
+     * Regroupe les noms distincts par instance propriétaire.
+     *
+     * @param userNames noms reçus, éventuellement en double
+     * @param forwarded {@code true} si la requête a déjà été transmise par une autre instance
+     * @return les noms locaux, les groupes à transmettre et, pour une requête déjà transmise,
+     *         les noms mal routés ; chacun dans l'ordre reçu
+     */
+    public Partition partition(Collection<String> userNames, boolean forwarded) {
+        List<String> local = new ArrayList<>();
+        Map<ClusterNode, List<String>> remote = new LinkedHashMap<>();
+        List<String> misrouted = new ArrayList<>();
+        for (String userName : new LinkedHashSet<>(userNames)) {
+            ClusterNode owner = router.ownerOf(userName);
+            if (owner.equals(router.getLocalNode())) {
+                local.add(userName);
+            } else if (forwarded) {
+                misrouted.add(userName);
+            } else {
+                remote.computeIfAbsent(owner, node -> new ArrayList<>()).add(userName);
+            }
+        }
+        return new Partition(local, remote, misrouted);
+    }
+
+    /**
+     * Transmet la requête groupée à l'instance propriétaire des utilisateurs.
+     *
+     * @param owner instance propriétaire
+     * @param path chemin de la requête, par exemple {@code /bulk/getRewards}
+     * @param userNames noms des utilisateurs de cette instance
+     * @return les lignes NDJSON de sa réponse, à terme ; en échec si l'instance ne répond pas
+     *         dans le délai ou renvoie une erreur
+     */
+    public CompletableFuture<List<String>> forward(ClusterNode owner, String path, List<String> userNames) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(owner.url().replaceAll("/+$", "") + path))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header(FORWARDED_HEADER, router.getLocalNode().id())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(userNames)))
+                    .build();
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofLines()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Node " + owner.id() + " answered " + response.statusCode());
+            }
+            return response.body().filter(line -> !line.isBlank()).toList();
+        });
+    }
+
+    public ShardRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * Noms d'une requête groupée répartis par instance.
+     */
+    public record Partition(List<String> local, Map<ClusterNode, List<String>> remote, List<String> misrouted) {
+    }
+}
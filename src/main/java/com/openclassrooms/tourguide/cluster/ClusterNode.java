@@ -0,0 +1,10 @@
+package com.openclassrooms.tourguide.cluster;
+
+/**
+ * Instance de l'application membre du cluster.
+ *
+ * @param id identifiant unique et stable de l'instance
+ * @param url adresse à laquelle les autres instances redirigent les requêtes qui lui reviennent
+ */
+public record ClusterNode(String id, String url) {
+}
@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Anneau de hachage cohérent, immuable, répartissant des clés entre les membres du cluster.
+ *
+ * <p>Chaque membre occupe {@code virtualNodes} positions pseudo-aléatoires sur l'anneau ; une
+ * clé appartient au membre de la première position qui la suit. Lorsqu'un membre arrive ou
+ * part, seules les clés des positions concernées changent de propriétaire, soit environ
+ * {@code 1/n} des clés. Les positions sont rangées dans un tableau trié, parcouru par
+ * recherche dichotomique.</p>
+ */
+public final class ConsistentHashRing {
+    private final long[] positions;
+    private final ClusterNode[] owners;
+    private final List<ClusterNode> nodes;
+
+    /**
+     * @param nodes membres du cluster
+     * @param virtualNodes nombre de positions par membre ; plus il est grand, plus la
+     *                     répartition est régulière
+     */
+    public ConsistentHashRing(Collection<ClusterNode> nodes, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+        }
+        // ordre indépendant de la collection reçue : toutes les instances construisent le même anneau
+        this.nodes = nodes.stream().distinct().sorted(Comparator.comparing(ClusterNode::id)).toList();
+        int size = this.nodes.size() * virtualNodes;
+        Entry[] entries = new Entry[size];
+        int i = 0;
+        for (ClusterNode node : this.nodes) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                entries[i++] = new Entry(hash(node.id() + "#" + replica), node);
+            }
+        }
+        Arrays.sort(entries, Comparator.comparingLong(Entry::position).thenComparing(e -> e.node().id()));
+        this.positions = new long[size];
+        this.owners = new ClusterNode[size];
+        for (i = 0; i < size; i++) {
+            positions[i] = entries[i].position();
+            owners[i] = entries[i].node();
+        }
+    }
+
+    public List<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    public boolean isEmpty() {
+        return positions.length == 0;
+    }
+
+    /**
+     * Retourne le membre propriétaire de la clé.
+     *
+     * @param key la clé, par exemple un nom d'utilisateur
+     * @return le propriétaire
+     * @throws IllegalStateException si l'anneau ne contient aucun membre
+     */
+    public ClusterNode ownerOf(String key) {
+        if (positions.length == 0) {
+            throw new IllegalStateException("No cluster member");
+        }
+        int index = Arrays.binarySearch(positions, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == positions.length ? 0 : index];
+    }
+
+    /**
+     * Hachage 64 bits FNV-1a des octets UTF-8, suivi du brassage final de MurmurHash3 pour
+     * répartir uniformément des clés très proches (internalUser1, internalUser2...).
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private record Entry(long position, ClusterNode node) {
+    }
+}
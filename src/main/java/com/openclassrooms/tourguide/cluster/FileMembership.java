@@ -0,0 +1,180 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+
+/**
+ * Composition du cluster tenue dans un répertoire partagé entre les instances.
+ *
+ * <p>Chaque instance y écrit un fichier {@code <id>.node} contenant son adresse, et le
+ * réécrit à chaque battement. Une instance dont le fichier n'a pas été réécrit depuis plus
+ * de {@code nodeTimeout} est considérée comme partie, ce qui couvre les arrêts brutaux ; un
+ * départ propre supprime le fichier. Le répertoire est relu à chaque battement et les
+ * observateurs sont prévenus lorsque la composition change.</p>
+ */
+public class FileMembership implements MembershipProvider {
+    private static final Logger logger = LoggerFactory.getLogger(FileMembership.class);
+    private static final String SUFFIX = ".node";
+    private static final Pattern NODE_ID = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private final Path directory;
+    private final Duration nodeTimeout;
+    private final List<Consumer<Set<ClusterNode>>> listeners = new CopyOnWriteArrayList<>();
+    private final Set<ClusterNode> localNodes = new HashSet<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-membership");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Set<ClusterNode> members = Set.of();
+
+    public FileMembership(TourGuideProperties.Cluster properties) throws IOException {
+        this(Path.of(properties.getDirectory()), properties.getHeartbeatInterval(), properties.getNodeTimeout());
+    }
+
+    /**
+     * @param directory répertoire partagé, créé s'il n'existe pas
+     * @param heartbeatInterval intervalle entre deux réécritures et relectures du répertoire
+     * @param nodeTimeout délai sans battement au-delà duquel une instance est considérée comme partie
+     * @throws IOException si le répertoire ne peut être créé
+     */
+    public FileMembership(Path directory, Duration heartbeatInterval, Duration nodeTimeout) throws IOException {
+        if (nodeTimeout.compareTo(heartbeatInterval) <= 0) {
+            throw new IllegalArgumentException("nodeTimeout must be longer than heartbeatInterval");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.nodeTimeout = nodeTimeout;
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval.toMillis(), heartbeatInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void join(ClusterNode node) {
+        if (!NODE_ID.matcher(node.id()).matches()) {
+            throw new IllegalArgumentException("Invalid node id: " + node.id());
+        }
+        synchronized (localNodes) {
+            localNodes.add(node);
+        }
+        write(node);
+        refresh();
+    }
+
+    @Override
+    public void leave(ClusterNode node) {
+        synchronized (localNodes) {
+            localNodes.remove(node);
+        }
+        try {
+            Files.deleteIfExists(fileOf(node));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot remove node " + node.id() + " from " + directory, e);
+        }
+        refresh();
+    }
+
+    @Override
+    public Set<ClusterNode> members() {
+        return members;
+    }
+
+    @Override
+    public void addListener(Consumer<Set<ClusterNode>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Relit le répertoire et prévient les observateurs si la composition a changé.
+     */
+    public synchronized void refresh() {
+        Set<ClusterNode> current = read();
+        if (!current.equals(members)) {
+            members = current;
+            logger.info("Cluster membership changed: {}", current);
+            listeners.forEach(listener -> listener.accept(current));
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        List<ClusterNode> nodes;
+        synchronized (localNodes) {
+            nodes = List.copyOf(localNodes);
+        }
+        nodes.forEach(this::leave);
+        listeners.clear();
+    }
+
+    private void heartbeat() {
+        try {
+            List<ClusterNode> nodes;
+            synchronized (localNodes) {
+                nodes = List.copyOf(localNodes);
+            }
+            nodes.forEach(this::write);
+            refresh();
+        } catch (RuntimeException e) {
+            // composition inchangée jusqu'au prochain battement
+            logger.warn("Cluster heartbeat failed in {}", directory, e);
+        }
+    }
+
+    private void write(ClusterNode node) {
+        Path file = fileOf(node);
+        try {
+            // écriture puis renommage : les autres instances ne lisent jamais un fichier partiel
+            Path temporary = Files.createTempFile(directory, node.id(), ".tmp");
+            Files.writeString(temporary, node.url(), StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write node " + node.id() + " to " + directory, e);
+        }
+    }
+
+    private Set<ClusterNode> read() {
+        long oldest = System.currentTimeMillis() - nodeTimeout.toMillis();
+        Set<ClusterNode> nodes = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() >= oldest) {
+                        String name = file.getFileName().toString();
+                        nodes.add(new ClusterNode(name.substring(0, name.length() - SUFFIX.length()),
+                                Files.readString(file, StandardCharsets.UTF_8).trim()));
+                    }
+                } catch (NoSuchFileException e) {
+                    // instance partie pendant la lecture
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read cluster members from " + directory, e);
+        }
+        return Set.copyOf(nodes);
+    }
+
+    private Path fileOf(ClusterNode node) {
+        return directory.resolve(node.id() + SUFFIX);
+    }
+}
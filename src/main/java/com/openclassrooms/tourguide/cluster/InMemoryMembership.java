@@ -0,0 +1,58 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Composition du cluster partagée en mémoire entre les instances d'une même JVM, pour les
+ * tests et le fonctionnement sur une seule machine. Les observateurs sont prévenus
+ * immédiatement, sur le thread qui modifie la composition.
+ */
+public class InMemoryMembership implements MembershipProvider {
+    private final Set<ClusterNode> members = new LinkedHashSet<>();
+    private final List<Consumer<Set<ClusterNode>>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void join(ClusterNode node) {
+        Set<ClusterNode> snapshot;
+        synchronized (members) {
+            if (!members.add(node)) {
+                return;
+            }
+            snapshot = Set.copyOf(members);
+        }
+        listeners.forEach(listener -> listener.accept(snapshot));
+    }
+
+    @Override
+    public void leave(ClusterNode node) {
+        Set<ClusterNode> snapshot;
+        synchronized (members) {
+            if (!members.remove(node)) {
+                return;
+            }
+            snapshot = Set.copyOf(members);
+        }
+        listeners.forEach(listener -> listener.accept(snapshot));
+    }
+
+    @Override
+    public Set<ClusterNode> members() {
+        synchronized (members) {
+            return Set.copyOf(members);
+        }
+    }
+
+    @Override
+    public void addListener(Consumer<Set<ClusterNode>> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        listeners.clear();
+    }
+}
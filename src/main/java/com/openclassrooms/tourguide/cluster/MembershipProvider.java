@@ -0,0 +1,33 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Source de la composition du cluster : instances présentes, arrivées et départs.
+ */
+public interface MembershipProvider extends AutoCloseable {
+
+    /**
+     * Annonce l'instance comme membre du cluster.
+     */
+    void join(ClusterNode node);
+
+    /**
+     * Retire l'instance du cluster.
+     */
+    void leave(ClusterNode node);
+
+    /**
+     * Retourne les membres actuels du cluster.
+     */
+    Set<ClusterNode> members();
+
+    /**
+     * Enregistre un observateur appelé avec la nouvelle composition à chaque changement.
+     */
+    void addListener(Consumer<Set<ClusterNode>> listener);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,87 @@
+package com.openclassrooms.tourguide.cluster;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+
+/**
+ * Répartition des utilisateurs entre les instances du cluster, par hachage cohérent de leur
+ * nom.
+ *
+ * <p>Le nom de l'utilisateur sert de clé car il est identique sur toutes les instances, à la
+ * différence de son identifiant. L'anneau est reconstruit à chaque changement de composition
+ * signalé par le {@link MembershipProvider} ; l'instance locale y figure toujours, même si sa
+ * présence n'a pas encore été constatée. Un utilisateur est ainsi toujours suivi par au moins
+ * une instance, au besoin par deux le temps que les compositions vues par chacune
+ * convergent.</p>
+ */
+public class ShardRouter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ShardRouter.class);
+
+    private final ClusterNode localNode;
+    private final MembershipProvider membership;
+    private final int virtualNodes;
+    private volatile ConsistentHashRing ring;
+
+    public ShardRouter(MembershipProvider membership, TourGuideProperties.Cluster properties) {
+        this(new ClusterNode(properties.getNodeId(), properties.getUrl()), membership, properties.getVirtualNodes());
+    }
+
+    /**
+     * Annonce l'instance locale et construit l'anneau à partir des membres connus.
+     *
+     * @param localNode l'instance locale
+     * @param membership composition du cluster
+     * @param virtualNodes nombre de positions de chaque instance sur l'anneau
+     */
+    public ShardRouter(ClusterNode localNode, MembershipProvider membership, int virtualNodes) {
+        this.localNode = localNode;
+        this.membership = membership;
+        this.virtualNodes = virtualNodes;
+        this.ring = new ConsistentHashRing(Set.of(localNode), virtualNodes);
+        membership.addListener(this::rebuild);
+        membership.join(localNode);
+        rebuild(membership.members());
+    }
+
+    public ClusterNode getLocalNode() {
+        return localNode;
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    /**
+     * Retourne l'instance chargée de l'utilisateur.
+     */
+    public ClusterNode ownerOf(String userName) {
+        return ring.ownerOf(userName);
+    }
+
+    /**
+     * Indique si l'utilisateur revient à l'instance locale.
+     */
+    public boolean isLocal(String userName) {
+        return ring.ownerOf(userName).equals(localNode);
+    }
+
+    @Override
+    public void close() {
+        membership.leave(localNode);
+    }
+
+    private synchronized void rebuild(Set<ClusterNode> members) {
+        Set<ClusterNode> nodes = new HashSet<>(members);
+        nodes.add(localNode);
+        if (nodes.equals(Set.copyOf(ring.getNodes()))) {
+            return;
+        }
+        ring = new ConsistentHashRing(nodes, virtualNodes);
+        logger.info("Users resharded across {} nodes, local node is {}.", nodes.size(), localNode.id());
+    }
+}
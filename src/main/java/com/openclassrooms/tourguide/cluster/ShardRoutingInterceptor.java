@@ -0,0 +1,40 @@
+package com.openclassrooms.tourguide.cluster;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Redirige vers l'instance propriétaire les requêtes portant sur un utilisateur
+ * (paramètre {@code userName}) qui ne revient pas à l'instance locale.
+ *
+ * <p>La redirection temporaire 307 conserve la méthode et le corps de la requête. Les
+ * requêtes sans paramètre {@code userName} sont traitées localement ; les requêtes groupées
+ * sont réparties entre les instances par {@link BulkForwarder}.</p>
+ */
+public class ShardRoutingInterceptor implements HandlerInterceptor {
+    private final ShardRouter router;
+
+    public ShardRoutingInterceptor(ShardRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String userName = request.getParameter("userName");
+        if (userName == null) {
+            return true;
+        }
+        ClusterNode owner = router.ownerOf(userName);
+        if (owner.equals(router.getLocalNode())) {
+            return true;
+        }
+        String query = request.getQueryString();
+        response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+        response.setHeader(HttpHeaders.LOCATION,
+                owner.url().replaceAll("/+$", "") + request.getRequestURI() + (query == null ? "" : "?" + query));
+        return false;
+    }
+}
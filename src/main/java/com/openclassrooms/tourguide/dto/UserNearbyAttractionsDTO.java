@@ -0,0 +1,17 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Ligne de la réponse NDJSON de {@code /bulk/getNearbyAttractions} : les attractions proches
+ * d'un utilisateur, ou l'erreur rencontrée pour cet utilisateur.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserNearbyAttractionsDTO(
+        String userName,
+        List<NearbyAttractionDTO> nearbyAttractions,
+        String error
+) {
+}
@@ -0,0 +1,18 @@
+package com.openclassrooms.tourguide.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Ligne de la réponse NDJSON de {@code /bulk/getRewards} : les récompenses d'un utilisateur,
+ * ou l'erreur rencontrée pour cet utilisateur.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserRewardsDTO(
+        String userName,
+        List<UserReward> rewards,
+        String error
+) {
+}
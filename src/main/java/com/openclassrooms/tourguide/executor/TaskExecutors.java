@@ -0,0 +1,145 @@
+package com.openclassrooms.tourguide.executor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+
+/**
+ * Fabrique des pools de threads utilisés pour les traitements par lots.
+ *
+ * <p>Les pools sont bornés : lorsque la file d'attente est pleine, la tâche est exécutée
+ * par le thread appelant ({@link ThreadPoolExecutor.CallerRunsPolicy}), ce qui ralentit
+ * naturellement la soumission au lieu de rejeter des tâches ou d'accumuler des millions
+ * de tâches en mémoire. Les pools sont réutilisables d'un lot à l'autre et ne sont arrêtés
+ * qu'à la fermeture du contexte Spring.</p>
+ *
+ * <p>En mode threads virtuels, chaque tâche dispose de son propre thread virtuel : les appels
+ * bloquants à GpsUtil ou RewardCentral ne monopolisent plus de thread système. Le nombre de
+ * tâches simultanées reste plafonné pour protéger les services distants ; au-delà, le thread
+ * appelant attend qu'une tâche se termine.</p>
+ *
+ * <p>Les traitements déportés des requêtes HTTP disposent de leur propre exécuteur, cloisonné
+ * des traitements par lots : il refuse les tâches au-delà de sa limite au lieu de les faire
+ * attendre ou de les exécuter sur le thread de la requête.</p>
+ */
+public final class TaskExecutors {
+
+    private TaskExecutors() {
+    }
+
+    /**
+     * Crée l'exécuteur correspondant au mode configuré, destiné à être déclaré comme bean.
+     *
+     * @param name préfixe du nom des threads
+     * @param pool dimensionnement de l'exécuteur
+     * @param virtualThreads {@code true} pour exécuter les tâches sur des threads virtuels
+     * @return l'exécuteur, non initialisé
+     */
+    public static AsyncTaskExecutor create(String name, TourGuideProperties.Pool pool, boolean virtualThreads) {
+        return virtualThreads ? virtual(name, pool) : bounded(name, pool);
+    }
+
+    /**
+     * Crée un exécuteur lançant chaque tâche sur un thread virtuel, dans la limite de
+     * {@link TourGuideProperties.Pool#getMaxConcurrency()} tâches simultanées.
+     *
+     * @param name préfixe du nom des threads
+     * @param pool dimensionnement de l'exécuteur
+     * @return l'exécuteur, prêt à l'emploi
+     */
+    public static SimpleAsyncTaskExecutor virtual(String name, TourGuideProperties.Pool pool) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        executor.setConcurrencyLimit(pool.getMaxConcurrency());
+        return executor;
+    }
+
+    /**
+     * Crée un exécuteur lançant chaque tâche sur un thread virtuel, dans la limite de
+     * {@link TourGuideProperties.Pool#getMaxConcurrency()} tâches simultanées. Au-delà, la tâche
+     * est refusée par une {@link RejectedExecutionException}, sans attente ni exécution par le
+     * thread appelant.
+     *
+     * @param name préfixe du nom des threads
+     * @param pool limite de concurrence
+     * @return l'exécuteur, prêt à l'emploi et sans arrêt nécessaire
+     */
+    public static Executor bulkhead(String name, TourGuideProperties.Pool pool) {
+        int maxConcurrency = pool.getMaxConcurrency();
+        ThreadFactory threads = Thread.ofVirtual().name(name + "-", 0).factory();
+        Semaphore permits = new Semaphore(maxConcurrency);
+        return task -> {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException(name + " already runs " + maxConcurrency + " tasks");
+            }
+            try {
+                threads.newThread(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                }).start();
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Équivalent de {@link CompletableFuture#supplyAsync(Supplier, Executor)} dont le résultat
+     * échoue, au lieu de lever une exception, lorsque l'exécuteur refuse la tâche.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> action, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(action, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Crée un pool borné destiné à être déclaré comme bean : Spring se charge de son
+     * initialisation et de son arrêt propre (attente des tâches en cours).
+     *
+     * @param name préfixe du nom des threads
+     * @param pool dimensionnement du pool
+     * @return le pool, non initialisé
+     */
+    public static ThreadPoolTaskExecutor bounded(String name, TourGuideProperties.Pool pool) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(name + "-");
+        executor.setCorePoolSize(pool.getPoolSize());
+        executor.setMaxPoolSize(pool.getPoolSize());
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(pool.getAwaitTerminationSeconds());
+        return executor;
+    }
+
+    /**
+     * Crée et démarre un pool borné pour un service instancié hors du contexte Spring.
+     * Ses threads sont des démons afin de ne pas empêcher l'arrêt de la JVM.
+     *
+     * @param name préfixe du nom des threads
+     * @param pool dimensionnement du pool
+     * @return le pool, prêt à l'emploi
+     */
+    public static ThreadPoolTaskExecutor standalone(String name, TourGuideProperties.Pool pool) {
+        ThreadPoolTaskExecutor executor = bounded(name, pool);
+        executor.setDaemon(true);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,27 @@
+package com.openclassrooms.tourguide.health;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * État du chargement des utilisateurs internes, rattaché au groupe de santé
+ * {@code readiness} : l'instance n'est signalée prête à recevoir du trafic qu'une fois tous
+ * les utilisateurs chargés ({@code tourguide.users.bootstrap=background}).
+ */
+@Component("users")
+public class UsersReadinessHealthIndicator implements HealthIndicator {
+    private final TourGuideService tourGuideService;
+
+    public UsersReadinessHealthIndicator(TourGuideService tourGuideService) {
+        this.tourGuideService = tourGuideService;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = tourGuideService.isReady() ? Health.up() : Health.outOfService();
+        return health.withDetail("loadedUsers", tourGuideService.getAllUsers().size()).build();
+    }
+}
@@ -0,0 +1,335 @@
+package com.openclassrooms.tourguide.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Historique persistant des localisations, hors du tas, dans des fichiers projetés en mémoire.
+ *
+ * <p>Les fichiers {@code segment-NNNNN.dat} du répertoire sont découpés en blocs de taille
+ * fixe. Chaque bloc appartient à un seul utilisateur : un en-tête de {@value #HEADER_BYTES}
+ * octets (marqueur, rang du bloc pour l'utilisateur, identifiant, nombre d'enregistrements)
+ * suivi d'enregistrements de {@value #RECORD_BYTES} octets (latitude, longitude, date en
+ * millisecondes). L'historique d'un utilisateur est la suite de ses blocs, alloués au fil
+ * des ajouts ; seul l'index utilisateur &rarr; blocs est conservé sur le tas.</p>
+ *
+ * <p>À l'ouverture, l'index est reconstruit en lisant les seuls en-têtes de blocs. Les
+ * écritures sont visibles des autres processus dès leur exécution et survivent à un arrêt
+ * brutal de la JVM ; {@link #force()} (appelé à la fermeture) les garantit aussi en cas
+ * d'arrêt du système. Le nombre d'enregistrements par bloc et de blocs par fichier ne doit
+ * pas changer pour un répertoire existant.</p>
+ *
+ * <p>Les ajouts pour un même utilisateur sont sérialisés ; les lectures ne prennent aucun
+ * verrou et lisent directement les fichiers projetés.</p>
+ */
+public class MappedLocationStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MappedLocationStore.class);
+
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 24;
+    // "TGLH" : marque un bloc alloué
+    private static final int BLOCK_MAGIC = 0x54474C48;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int ORDINAL_OFFSET = 4;
+    private static final int MSB_OFFSET = 8;
+    private static final int LSB_OFFSET = 16;
+    private static final int COUNT_OFFSET = 24;
+
+    private final Path directory;
+    private final int recordsPerBlock;
+    private final int blocksPerFile;
+    private final int blockBytes;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final List<MappedByteBuffer> files = new CopyOnWriteArrayList<>();
+    private final Map<UUID, Segment> segments = new ConcurrentHashMap<>();
+    // prochain bloc libre ; protégé par le moniteur de channels
+    private long nextBlock;
+
+    public MappedLocationStore(TourGuideProperties.History properties) throws IOException {
+        this(Path.of(properties.getDirectory()), properties.getRecordsPerBlock(), properties.getBlocksPerFile());
+    }
+
+    /**
+     * Ouvre (ou crée) le stockage dans le répertoire donné et reconstruit l'index.
+     *
+     * @param directory répertoire des fichiers de segments
+     * @param recordsPerBlock nombre de localisations par bloc
+     * @param blocksPerFile nombre de blocs par fichier
+     * @throws IOException si le répertoire ou un fichier ne peut être ouvert
+     */
+    public MappedLocationStore(Path directory, int recordsPerBlock, int blocksPerFile) throws IOException {
+        if (recordsPerBlock <= 0 || blocksPerFile <= 0) {
+            throw new IllegalArgumentException("recordsPerBlock and blocksPerFile must be positive");
+        }
+        long fileBytes = (long) (HEADER_BYTES + recordsPerBlock * RECORD_BYTES) * blocksPerFile;
+        if (fileBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment files are limited to 2 GiB, got " + fileBytes + " bytes");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.recordsPerBlock = recordsPerBlock;
+        this.blocksPerFile = blocksPerFile;
+        this.blockBytes = HEADER_BYTES + recordsPerBlock * RECORD_BYTES;
+        recover();
+    }
+
+    /**
+     * Ajoute une localisation à la fin de l'historique de son utilisateur.
+     *
+     * @throws UncheckedIOException si un nouveau fichier de segments ne peut être créé
+     */
+    public void append(VisitedLocation visitedLocation) {
+        segments.computeIfAbsent(visitedLocation.userId, Segment::new)
+                .append(visitedLocation.location.latitude, visitedLocation.location.longitude,
+                        visitedLocation.timeVisited.getTime());
+    }
+
+    /**
+     * Nombre de localisations enregistrées pour l'utilisateur.
+     */
+    public int count(UUID userId) {
+        Segment segment = segments.get(userId);
+        return segment == null ? 0 : segment.count;
+    }
+
+    /**
+     * Vue immuable des localisations de l'utilisateur à partir du numéro d'ordre donné,
+     * lues directement dans les fichiers projetés.
+     *
+     * @param userId identifiant de l'utilisateur
+     * @param fromSequence numéro d'ordre (à partir de 0) de la première localisation
+     * @return les localisations, dans l'ordre d'ajout
+     */
+    public List<VisitedLocation> read(UUID userId, int fromSequence) {
+        Segment segment = segments.get(userId);
+        if (segment == null) {
+            return List.of();
+        }
+        int end = segment.count;
+        long[] blocks = segment.blocks;
+        int start = Math.max(0, Math.min(fromSequence, end));
+        return new View(userId, blocks, start, end);
+    }
+
+    /**
+     * Nombre d'utilisateurs ayant au moins une localisation enregistrée.
+     */
+    public int userCount() {
+        return segments.size();
+    }
+
+    /**
+     * Force l'écriture sur disque des pages modifiées.
+     */
+    public void force() {
+        files.forEach(MappedByteBuffer::force);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        synchronized (channels) {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        Map<UUID, List<long[]>> found = new HashMap<>();
+        long lastBlock = -1;
+        for (int fileIndex = 0; Files.exists(segmentFile(fileIndex)); fileIndex++) {
+            if (Files.size(segmentFile(fileIndex)) != (long) blockBytes * blocksPerFile) {
+                throw new IllegalStateException("Unexpected size for " + segmentFile(fileIndex)
+                        + ": the store was created with a different layout");
+            }
+            MappedByteBuffer file = map(fileIndex);
+            for (int i = 0; i < blocksPerFile; i++) {
+                int base = i * blockBytes;
+                if (file.getInt(base + MAGIC_OFFSET) != BLOCK_MAGIC) {
+                    continue;
+                }
+                long block = (long) fileIndex * blocksPerFile + i;
+                UUID userId = new UUID(file.getLong(base + MSB_OFFSET), file.getLong(base + LSB_OFFSET));
+                found.computeIfAbsent(userId, id -> new ArrayList<>())
+                        .add(new long[] {file.getInt(base + ORDINAL_OFFSET), block});
+                lastBlock = block;
+            }
+        }
+        nextBlock = lastBlock + 1;
+
+        long locations = 0;
+        for (Map.Entry<UUID, List<long[]>> entry : found.entrySet()) {
+            Segment segment = new Segment(entry.getKey());
+            segment.recover(entry.getValue());
+            segments.put(entry.getKey(), segment);
+            locations += segment.count;
+        }
+        logger.info("Location history store opened in {}: {} users, {} locations.", directory, segments.size(), locations);
+    }
+
+    private long allocateBlock(UUID userId, int ordinal) {
+        synchronized (channels) {
+            long block = nextBlock;
+            int fileIndex = (int) (block / blocksPerFile);
+            try {
+                while (files.size() <= fileIndex) {
+                    map(files.size());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create " + segmentFile(fileIndex), e);
+            }
+            MappedByteBuffer file = file(block);
+            int base = offset(block);
+            file.putInt(base + ORDINAL_OFFSET, ordinal);
+            file.putLong(base + MSB_OFFSET, userId.getMostSignificantBits());
+            file.putLong(base + LSB_OFFSET, userId.getLeastSignificantBits());
+            file.putInt(base + COUNT_OFFSET, 0);
+            // le marqueur en dernier : un en-tête incomplet n'est pas relu à l'ouverture
+            file.putInt(base + MAGIC_OFFSET, BLOCK_MAGIC);
+            nextBlock = block + 1;
+            return block;
+        }
+    }
+
+    private MappedByteBuffer map(int fileIndex) throws IOException {
+        synchronized (channels) {
+            FileChannel channel = FileChannel.open(segmentFile(fileIndex),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) blockBytes * blocksPerFile);
+            channels.add(channel);
+            files.add(file);
+            return file;
+        }
+    }
+
+    private Path segmentFile(int fileIndex) {
+        return directory.resolve(String.format("segment-%05d.dat", fileIndex));
+    }
+
+    private MappedByteBuffer file(long block) {
+        return files.get((int) (block / blocksPerFile));
+    }
+
+    private int offset(long block) {
+        return (int) (block % blocksPerFile) * blockBytes;
+    }
+
+    private int recordOffset(long block, int slot) {
+        return offset(block) + HEADER_BYTES + slot * RECORD_BYTES;
+    }
+
+    /**
+     * Historique d'un utilisateur : la liste de ses blocs, dans l'ordre.
+     */
+    private final class Segment {
+        private final UUID userId;
+        private volatile long[] blocks = new long[0];
+        // nombre de localisations ; écrit après les enregistrements qu'il publie
+        private volatile int count;
+
+        private Segment(UUID userId) {
+            this.userId = userId;
+        }
+
+        private synchronized void append(double latitude, double longitude, long epochMillis) {
+            int sequence = count;
+            int ordinal = sequence / recordsPerBlock;
+            int slot = sequence % recordsPerBlock;
+            long[] current = blocks;
+            if (ordinal == current.length) {
+                current = Arrays.copyOf(current, current.length + 1);
+                current[ordinal] = allocateBlock(userId, ordinal);
+                blocks = current;
+            }
+            long block = current[ordinal];
+            MappedByteBuffer file = file(block);
+            int offset = recordOffset(block, slot);
+            file.putDouble(offset, latitude);
+            file.putDouble(offset + 8, longitude);
+            file.putLong(offset + 16, epochMillis);
+            file.putInt(offset(block) + COUNT_OFFSET, slot + 1);
+            count = sequence + 1;
+        }
+
+        /**
+         * Reconstruit la liste des blocs à partir des couples (rang, bloc) lus à l'ouverture.
+         * L'historique est tronqué au premier rang manquant.
+         */
+        private void recover(List<long[]> ordinalsAndBlocks) {
+            ordinalsAndBlocks.sort((a, b) -> Long.compare(a[0], b[0]));
+            int kept = 0;
+            while (kept < ordinalsAndBlocks.size() && ordinalsAndBlocks.get(kept)[0] == kept) {
+                kept++;
+            }
+            if (kept < ordinalsAndBlocks.size()) {
+                logger.warn("Location history of user {} is truncated after {} blocks.", userId, kept);
+            }
+            long[] recovered = new long[kept];
+            for (int i = 0; i < kept; i++) {
+                recovered[i] = ordinalsAndBlocks.get(i)[1];
+            }
+            blocks = recovered;
+            if (kept > 0) {
+                long last = recovered[kept - 1];
+                int lastCount = Math.min(recordsPerBlock, file(last).getInt(offset(last) + COUNT_OFFSET));
+                count = (kept - 1) * recordsPerBlock + lastCount;
+            }
+        }
+    }
+
+    private final class View extends AbstractList<VisitedLocation> implements RandomAccess {
+        private final UUID userId;
+        private final long[] blocks;
+        private final int start;
+        private final int end;
+
+        private View(UUID userId, long[] blocks, int start, int end) {
+            this.userId = userId;
+            this.blocks = blocks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public VisitedLocation get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            int sequence = start + index;
+            long block = blocks[sequence / recordsPerBlock];
+            MappedByteBuffer file = file(block);
+            int offset = recordOffset(block, sequence % recordsPerBlock);
+            return new VisitedLocation(userId, new Location(file.getDouble(offset), file.getDouble(offset + 8)),
+                    new Date(file.getLong(offset + 16)));
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.metrics;
+
+import java.util.function.ToDoubleFunction;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Métriques des chemins critiques du suivi et des récompenses.
+ *
+ * <p>Les mesures sont enregistrées dans le registre global de Micrometer, auquel Spring Boot
+ * rattache les registres qu'il configure (dont Prometheus, exposé sur
+ * {@code /actuator/prometheus}). Hors du contexte Spring, par exemple dans les tests
+ * unitaires, elles ne coûtent presque rien tant qu'aucun registre n'est rattaché.</p>
+ *
+ * <p>Les timers publient un histogramme, pour calculer les percentiles côté Prometheus.</p>
+ */
+public final class TourGuideMetrics {
+    public static final String GPS_USER_LOCATION = "tourguide.gps.user.location";
+    public static final String REWARD_CENTRAL_POINTS = "tourguide.reward.central.points";
+    public static final String TRIP_PRICER_PRICE = "tourguide.trip.pricer.price";
+    public static final String CALCULATE_REWARDS = "tourguide.rewards.calculate";
+    public static final String REWARD_EVENTS_PUBLISHED = "tourguide.rewards.events.published";
+    public static final String REWARD_EVENTS_COALESCED = "tourguide.rewards.events.coalesced";
+    public static final String REWARD_EVENTS_QUEUED = "tourguide.rewards.events.queued";
+    public static final String TRACKER_CYCLE = "tourguide.tracker.cycle";
+    public static final String TRACKER_USERS = "tourguide.tracker.users";
+    public static final String TRACKER_THROUGHPUT = "tourguide.tracker.throughput";
+    public static final String EXECUTOR_ACTIVE = "tourguide.executor.active";
+    public static final String EXECUTOR_QUEUED = "tourguide.executor.queued";
+    public static final String STAGE_ACTIVE = "tourguide.pipeline.stage.active";
+    public static final String UPSTREAM_CALLS = "tourguide.upstream.calls";
+    public static final String UPSTREAM_HEDGES = "tourguide.upstream.hedges";
+    public static final String UPSTREAM_FALLBACKS = "tourguide.upstream.fallbacks";
+    public static final String UPSTREAM_CIRCUIT_STATE = "tourguide.upstream.circuit.state";
+
+    private TourGuideMetrics() {
+    }
+
+    public static MeterRegistry registry() {
+        return Metrics.globalRegistry;
+    }
+
+    public static Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(registry());
+    }
+
+    public static Counter counter(String name, String description, String... tags) {
+        return counter(registry(), name, description, tags);
+    }
+
+    public static Counter counter(MeterRegistry registry, String name, String description, String... tags) {
+        return Counter.builder(name).description(description).tags(tags).register(registry);
+    }
+
+    /**
+     * Jauge lue sur {@code target}, référencé faiblement : elle disparaît avec l'objet mesuré.
+     */
+    public static <T> void gauge(String name, String description, T target, ToDoubleFunction<T> value,
+                                 String... tags) {
+        gauge(registry(), name, description, target, value, tags);
+    }
+
+    public static <T> Gauge gauge(MeterRegistry registry, String name, String description, T target,
+                                  ToDoubleFunction<T> value, String... tags) {
+        return Gauge.builder(name, target, value).description(description).tags(tags).register(registry);
+    }
+}
@@ -0,0 +1,159 @@
+package com.openclassrooms.tourguide.pipeline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+
+/**
+ * Traitement par lots en flux, à mémoire constante quelle que soit la taille de la source.
+ *
+ * <p>Les éléments sont lus dans la source par paquets de taille fixe et soumis à l'exécuteur
+ * au fil de l'eau : le nombre de tâches en cours est plafonné, la lecture de la source
+ * attendant qu'une tâche se termine. Aucune tâche n'est donc créée à l'avance pour toute la
+ * population. Un élément en échec est repris jusqu'au nombre de tentatives configuré ; les
+ * échecs sont comptés par élément et restitués dans le {@link BatchReport}, la progression
+ * est journalisée après chaque paquet.</p>
+ *
+ * <p>Le traitement doit pouvoir être rejoué sans effet de bord pour un même élément.</p>
+ */
+public class BatchPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(BatchPipeline.class);
+
+    private final String name;
+    private final Executor executor;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final int maxAttempts;
+
+    public BatchPipeline(String name, Executor executor, TourGuideProperties.Pipeline properties) {
+        this(name, executor, properties.getChunkSize(), properties.getMaxInFlight(), properties.getMaxAttempts());
+    }
+
+    /**
+     * @param name nom du traitement, repris dans les journaux
+     * @param executor exécuteur des tâches
+     * @param chunkSize nombre d'éléments lus à la fois dans la source
+     * @param maxInFlight nombre maximal de tâches soumises et non terminées
+     * @param maxAttempts nombre maximal de tentatives par élément (1 : aucune reprise)
+     */
+    public BatchPipeline(String name, Executor executor, int chunkSize, int maxInFlight, int maxAttempts) {
+        if (chunkSize <= 0 || maxInFlight <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("chunkSize, maxInFlight and maxAttempts must be positive");
+        }
+        this.name = name;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Applique le traitement à chaque élément de la source et attend la fin de toutes les tâches.
+     *
+     * <p>Si le thread appelant est interrompu, la lecture de la source s'arrête ; les tâches
+     * déjà soumises sont attendues et seules elles figurent dans le bilan.</p>
+     *
+     * @param source éléments à traiter, lus une seule fois
+     * @param task traitement d'un élément ; une exception signale un échec
+     * @return le bilan du traitement
+     */
+    public <T> BatchReport<T> run(Iterator<? extends T> source, Consumer<? super T> task) {
+        Run<T> run = new Run<>(task);
+        StopWatch stopWatch = StopWatch.createStarted();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        try {
+            while (source.hasNext()) {
+                chunk.clear();
+                while (source.hasNext() && chunk.size() < chunkSize) {
+                    chunk.add(source.next());
+                }
+                for (T item : chunk) {
+                    run.inFlight.acquire();
+                    run.submitted++;
+                    run.attempt(item, 1);
+                }
+                logger.debug("{}: {} submitted, {} succeeded, {} failed, {} retries.", name, run.submitted,
+                        run.succeeded.get(), run.failedItems.size(), run.retries.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("{}: interrupted after {} submitted items.", name, run.submitted);
+        }
+        run.inFlight.acquireUninterruptibly(maxInFlight);
+        run.inFlight.release(maxInFlight);
+        stopWatch.stop();
+
+        BatchReport<T> report = new BatchReport<>(run.submitted, run.succeeded.get(), List.copyOf(run.failedItems),
+                run.retries.get(), Map.copyOf(run.failureCounts), Duration.ofMillis(stopWatch.getTime()));
+        if (report.hasFailures()) {
+            logger.warn("{}: {}", name, report);
+        } else {
+            logger.debug("{}: {}", name, report);
+        }
+        return report;
+    }
+
+    /**
+     * État d'une exécution de {@link #run}.
+     */
+    private final class Run<T> {
+        private final Consumer<? super T> task;
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger retries = new AtomicInteger();
+        private final Queue<T> failedItems = new ConcurrentLinkedQueue<>();
+        private final Map<T, Integer> failureCounts = new ConcurrentHashMap<>();
+        // lu et écrit par le seul thread appelant
+        private int submitted;
+
+        private Run(Consumer<? super T> task) {
+            this.task = task;
+        }
+
+        private void attempt(T item, int attempt) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.accept(item);
+                    } catch (Throwable e) {
+                        onFailure(item, attempt, e);
+                        return;
+                    }
+                    succeeded.incrementAndGet();
+                    inFlight.release();
+                });
+            } catch (RejectedExecutionException e) {
+                onFailure(item, maxAttempts, e);
+            }
+        }
+
+        private void onFailure(T item, int attempt, Throwable e) {
+            failureCounts.merge(item, 1, Integer::sum);
+            if (attempt < maxAttempts) {
+                logger.debug("{}: attempt {} failed for {}, retrying.", name, attempt, item, e);
+                retries.incrementAndGet();
+                attempt(item, attempt + 1);
+            } else {
+                logger.debug("{}: giving up on {} after {} attempts.", name, item, attempt, e);
+                failedItems.add(item);
+                inFlight.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.openclassrooms.tourguide.pipeline;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bilan d'un traitement par lots.
+ *
+ * @param submitted nombre d'éléments soumis
+ * @param succeeded nombre d'éléments traités avec succès, éventuellement après une ou plusieurs reprises
+ * @param failedItems éléments en échec après la dernière tentative
+ * @param retries nombre total de reprises
+ * @param failureCounts nombre d'échecs par élément, pour les seuls éléments ayant échoué au moins une fois
+ * @param elapsed durée du traitement
+ * @param <T> type des éléments traités
+ */
+public record BatchReport<T>(int submitted, int succeeded, List<T> failedItems, int retries,
+                             Map<T, Integer> failureCounts, Duration elapsed) {
+
+    public int failed() {
+        return failedItems.size();
+    }
+
+    public boolean hasFailures() {
+        return !failedItems.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d succeeded, %d failed, %d retries in %d ms",
+                succeeded, submitted, failed(), retries, elapsed.toMillis());
+    }
+}
@@ -0,0 +1,63 @@
+package com.openclassrooms.tourguide.pipeline;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+/**
+ * Plafond du nombre d'exécutions simultanées d'une étape de traitement (appel à GpsUtil,
+ * recherche des attractions proches, appel à RewardCentral). Au-delà, l'appelant attend
+ * qu'une exécution se termine.
+ */
+public class ConcurrencyLimit {
+
+    private final String name;
+    private final int maxConcurrency;
+    private final Semaphore permits;
+
+    public ConcurrencyLimit(String name, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException(name + " concurrency must be positive: " + maxConcurrency);
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        TourGuideMetrics.gauge(TourGuideMetrics.STAGE_ACTIVE, "Exécutions en cours de l'étape", this,
+                ConcurrencyLimit::getActiveCount, "stage", name);
+    }
+
+    /**
+     * Exécute l'action dès qu'une place est libre.
+     *
+     * @throws IllegalStateException si le thread est interrompu pendant l'attente
+     */
+    public <V> V call(Supplier<V> action) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the " + name + " stage", e);
+        }
+        try {
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Nombre d'exécutions en cours.
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+}
@@ -0,0 +1,130 @@
+package com.openclassrooms.tourguide.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Utilisateurs conservés en mémoire et journalisés dans un fichier.
+ *
+ * <p>Chaque ajout est écrit à la fin du journal (identifiant, nom, téléphone, e-mail) ; à
+ * l'ouverture, le journal est relu pour reconstituer les utilisateurs. Un enregistrement
+ * incomplet en fin de fichier (arrêt pendant une écriture) est ignoré et tronqué. Seule
+ * l'identité des utilisateurs est persistée : leurs localisations relèvent de l'historique
+ * des localisations, récompenses et préférences ne sont pas conservées.</p>
+ */
+public class FileUserRepository implements UserRepository, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FileUserRepository.class);
+
+    private final InMemoryUserRepository users = new InMemoryUserRepository();
+    private final Path file;
+    private final FileChannel channel;
+    private final DataOutputStream output;
+
+    /**
+     * @param file journal des utilisateurs, créé s'il n'existe pas
+     * @param locationRetention nombre maximal de localisations conservées en mémoire par utilisateur
+     * @throws IOException si le journal ne peut être lu ou ouvert en écriture
+     */
+    public FileUserRepository(Path file, int locationRetention) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long validLength = load(locationRetention);
+        if (validLength < channel.size()) {
+            logger.warn("Truncating incomplete user record at the end of {}.", file);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    @Override
+    public User findByUserName(String userName) {
+        return users.findByUserName(userName);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException si l'utilisateur ajouté ne peut être journalisé
+     */
+    @Override
+    public boolean add(User user) {
+        if (!users.add(user)) {
+            return false;
+        }
+        synchronized (output) {
+            try {
+                output.writeLong(user.getUserId().getMostSignificantBits());
+                output.writeLong(user.getUserId().getLeastSignificantBits());
+                output.writeUTF(user.getUserName());
+                output.writeUTF(user.getPhoneNumber());
+                output.writeUTF(user.getEmailAddress());
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write user " + user.getUserName() + " to " + file, e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int count() {
+        return users.count();
+    }
+
+    @Override
+    public List<User> snapshot() {
+        return users.snapshot();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (output) {
+            output.close();
+        }
+    }
+
+    /**
+     * Relit le journal et retourne la longueur de sa partie valide.
+     */
+    private long load(int locationRetention) throws IOException {
+        long validLength = 0;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        try {
+            while (true) {
+                UUID userId = new UUID(input.readLong(), input.readLong());
+                String userName = input.readUTF();
+                String phoneNumber = input.readUTF();
+                String emailAddress = input.readUTF();
+                users.add(new User(userId, userName, phoneNumber, emailAddress, locationRetention));
+                // octets consommés = taille du fichier - octets encore disponibles (tampon compris)
+                validLength = channel.size() - input.available();
+            }
+        } catch (EOFException e) {
+            logger.info("Loaded {} users from {}.", users.count(), file);
+        }
+        return validLength;
+    }
+}
@@ -0,0 +1,62 @@
+package com.openclassrooms.tourguide.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Utilisateurs conservés en mémoire.
+ *
+ * <p>La recherche par nom passe par une {@link ConcurrentHashMap}. Les utilisateurs sont aussi
+ * rangés, dans l'ordre d'ajout, dans un tableau dont les cases ne sont jamais réécrites : un
+ * instantané se limite à capturer le tableau et sa taille, sans copie. Les utilisateurs ne
+ * sont jamais supprimés.</p>
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, User> usersByName = new ConcurrentHashMap<>();
+    // tableau et taille publiés ensemble, remplacés à chaque ajout
+    private volatile Snapshot snapshot = new Snapshot(new User[INITIAL_CAPACITY], 0);
+
+    @Override
+    public User findByUserName(String userName) {
+        return usersByName.get(userName);
+    }
+
+    @Override
+    public boolean add(User user) {
+        if (usersByName.putIfAbsent(user.getUserName(), user) != null) {
+            return false;
+        }
+        synchronized (this) {
+            Snapshot current = snapshot;
+            User[] users = current.users;
+            if (current.size == users.length) {
+                users = Arrays.copyOf(users, users.length * 2);
+            }
+            users[current.size] = user;
+            snapshot = new Snapshot(users, current.size + 1);
+        }
+        return true;
+    }
+
+    @Override
+    public int count() {
+        return snapshot.size;
+    }
+
+    @Override
+    public List<User> snapshot() {
+        Snapshot current = snapshot;
+        return Collections.unmodifiableList(Arrays.asList(current.users).subList(0, current.size));
+    }
+
+    private record Snapshot(User[] users, int size) {
+    }
+}
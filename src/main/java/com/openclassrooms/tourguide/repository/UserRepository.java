@@ -0,0 +1,35 @@
+package com.openclassrooms.tourguide.repository;
+
+import java.util.List;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Stockage des utilisateurs, indexés par nom d'utilisateur.
+ *
+ * <p>Les implémentations sont sûres en accès concurrent : le suivi et les requêtes REST
+ * lisent et ajoutent des utilisateurs en parallèle.</p>
+ */
+public interface UserRepository {
+
+    /**
+     * @return l'utilisateur portant ce nom, ou {@code null} s'il est inconnu
+     */
+    User findByUserName(String userName);
+
+    /**
+     * Ajoute l'utilisateur si aucun utilisateur ne porte déjà son nom ; la vérification et
+     * l'ajout sont atomiques.
+     *
+     * @return {@code true} si l'utilisateur a été ajouté
+     */
+    boolean add(User user);
+
+    int count();
+
+    /**
+     * Instantané immuable des utilisateurs, dans l'ordre d'ajout. Son obtention ne recopie
+     * pas les utilisateurs ; les ajouts ultérieurs n'y apparaissent pas.
+     */
+    List<User> snapshot();
+}
@@ -0,0 +1,135 @@
+package com.openclassrooms.tourguide.resilience;
+
+import java.time.Duration;
+
+/**
+ * Disjoncteur d'un service distant, fondé sur la proportion d'échecs parmi les derniers appels.
+ *
+ * <p>Fermé, il laisse passer les appels et retient l'issue des {@code slidingWindowSize}
+ * derniers. Dès que {@code minimumCalls} issues sont connues et que la proportion d'échecs
+ * atteint le seuil, il s'ouvre et refuse tous les appels pendant {@code openDuration}. Il
+ * laisse ensuite passer un unique appel d'essai (demi-ouvert) : un succès le referme, un
+ * échec le rouvre pour la même durée.</p>
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    // issues des derniers appels, en anneau : true pour un échec
+    private final boolean[] outcomes;
+    private int outcomeCount;
+    private int failureCount;
+    private int next;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probing;
+
+    /**
+     * @param failureRateThreshold proportion d'échecs qui ouvre le disjoncteur, entre 0 et 1
+     * @param slidingWindowSize nombre d'appels dont l'issue est retenue
+     * @param minimumCalls nombre d'issues à connaître avant de pouvoir s'ouvrir
+     * @param openDuration durée d'ouverture avant l'appel d'essai
+     */
+    public CircuitBreaker(double failureRateThreshold, int slidingWindowSize, int minimumCalls, Duration openDuration) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("failureRateThreshold must be in ]0, 1]: " + failureRateThreshold);
+        }
+        if (slidingWindowSize <= 0 || minimumCalls <= 0 || minimumCalls > slidingWindowSize) {
+            throw new IllegalArgumentException("minimumCalls must be between 1 and slidingWindowSize");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.openNanos = openDuration.toNanos();
+        this.outcomes = new boolean[slidingWindowSize];
+    }
+
+    /**
+     * Demande l'autorisation d'appeler le service. Chaque autorisation accordée doit être
+     * suivie de {@link #onSuccess()}, {@link #onFailure()} ou {@link #releasePermission()}.
+     *
+     * @return {@code false} si le disjoncteur est ouvert, ou demi-ouvert avec un appel d'essai en cours
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (probing) {
+                    yield false;
+                }
+                probing = true;
+                yield true;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (outcomeCount >= minimumCalls && failureCount >= failureRateThreshold * outcomeCount) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Rend une autorisation sans issue connue, par exemple lorsque l'appel n'a pas été lancé.
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (outcomeCount == outcomes.length) {
+            if (outcomes[next]) {
+                failureCount--;
+            }
+        } else {
+            outcomeCount++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        probing = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        probing = false;
+        outcomeCount = 0;
+        failureCount = 0;
+        next = 0;
+    }
+}
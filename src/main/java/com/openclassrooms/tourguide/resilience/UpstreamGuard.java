@@ -0,0 +1,231 @@
+package com.openclassrooms.tourguide.resilience;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+/**
+ * Protection des appels à un service distant : délai de réponse, plafond d'appels en cours,
+ * disjoncteur et appel redoublé pour les réponses tardives.
+ *
+ * <p>Chaque appel s'exécute sur un thread virtuel qui lui est propre ; l'appelant attend sa
+ * réponse au plus {@code timeout}. Un appel abandonné poursuit son exécution sans retenir
+ * l'appelant ni un thread des pools de l'application, mais occupe une place parmi les
+ * {@code maxConcurrentCalls} appels en cours jusqu'à sa fin : un service qui ne répond plus
+ * ne peut donc pas accumuler un nombre illimité d'appels. Lorsqu'aucune place n'est libre,
+ * ou que le disjoncteur est ouvert, l'appel est refusé immédiatement.</p>
+ *
+ * <p>Si {@code hedgeDelay} est positif et qu'aucune réponse n'est arrivée dans ce délai, un
+ * second appel identique est lancé et la première réponse obtenue est retenue. Le second
+ * appel n'est lancé que si le disjoncteur est fermé et qu'une place est libre, pour ne pas
+ * doubler la charge d'un service déjà en difficulté. Il ne convient qu'aux appels sans effet
+ * de bord, ce qui est le cas des trois services utilisés.</p>
+ *
+ * <p>Une erreur levée par le service est propagée telle quelle ; un refus ou un délai
+ * dépassé lève {@link UpstreamUnavailableException}. Les deux comptent comme des échecs
+ * pour le disjoncteur.</p>
+ */
+public class UpstreamGuard implements AutoCloseable {
+
+    private final String name;
+    private final long timeoutNanos;
+    private final long hedgeDelayNanos;
+    private final int maxConcurrentCalls;
+    private final Duration openDuration;
+    private final Semaphore calls;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService executor;
+    private final MeterRegistry registry;
+    private final List<Meter> meters = new ArrayList<>();
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter timeouts;
+    private final Counter rejections;
+    private final Counter hedges;
+    private volatile boolean closed;
+
+    public UpstreamGuard(String name, TourGuideProperties.Guard properties) {
+        this(name, properties, TourGuideMetrics.registry());
+    }
+
+    /**
+     * @param name nom du service, repris dans les métriques et les messages d'erreur
+     * @param properties délais, plafond d'appels et réglages du disjoncteur
+     * @param registry registre des métriques, qui en sont retirées à la fermeture
+     */
+    public UpstreamGuard(String name, TourGuideProperties.Guard properties, MeterRegistry registry) {
+        if (!properties.getTimeout().isPositive()) {
+            throw new IllegalArgumentException(name + " timeout must be positive: " + properties.getTimeout());
+        }
+        if (properties.getMaxConcurrentCalls() <= 0) {
+            throw new IllegalArgumentException(name + " maxConcurrentCalls must be positive: "
+                    + properties.getMaxConcurrentCalls());
+        }
+        this.name = name;
+        this.timeoutNanos = properties.getTimeout().toNanos();
+        this.hedgeDelayNanos = properties.getHedgeDelay().toNanos();
+        this.maxConcurrentCalls = properties.getMaxConcurrentCalls();
+        this.openDuration = properties.getOpenDuration();
+        this.calls = new Semaphore(maxConcurrentCalls);
+        this.circuitBreaker = new CircuitBreaker(properties.getFailureRateThreshold(),
+                properties.getSlidingWindowSize(), properties.getMinimumCalls(), properties.getOpenDuration());
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("upstream-" + name + "-", 0).factory());
+        this.registry = registry;
+        this.successes = outcome("success");
+        this.failures = outcome("failure");
+        this.timeouts = outcome("timeout");
+        this.rejections = outcome("rejected");
+        this.hedges = register(TourGuideMetrics.counter(registry, TourGuideMetrics.UPSTREAM_HEDGES,
+                "Seconds appels lancés faute de réponse dans le délai", "upstream", name));
+        register(TourGuideMetrics.gauge(registry, TourGuideMetrics.UPSTREAM_CIRCUIT_STATE,
+                "État du disjoncteur : 0 fermé, 1 ouvert, 2 demi-ouvert", circuitBreaker,
+                breaker -> breaker.getState().ordinal(), "upstream", name));
+    }
+
+    /**
+     * Exécute l'appel sous la protection du disjoncteur, du plafond d'appels et du délai.
+     *
+     * @param action appel au service, sans effet de bord
+     * @return sa réponse
+     * @throws UpstreamUnavailableException si l'appel est refusé ou sans réponse dans le délai
+     */
+    public <T> T call(Supplier<T> action) {
+        if (closed) {
+            throw new UpstreamUnavailableException(name + " guard is closed");
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            rejections.increment();
+            throw new UpstreamUnavailableException(name + " circuit breaker is open", openDuration);
+        }
+        CompletableFuture<T> response = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger();
+        if (!launch(action, response, attempts)) {
+            circuitBreaker.releasePermission();
+            rejections.increment();
+            throw new UpstreamUnavailableException(name + " has too many calls in progress");
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            T value;
+            if (hedgeDelayNanos > 0 && hedgeDelayNanos < timeoutNanos) {
+                try {
+                    value = response.get(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (circuitBreaker.getState() == CircuitBreaker.State.CLOSED && launch(action, response, attempts)) {
+                        hedges.increment();
+                    }
+                    value = response.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            } else {
+                value = response.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            circuitBreaker.onSuccess();
+            successes.increment();
+            return value;
+        } catch (TimeoutException e) {
+            // une réponse tardive sera ignorée
+            response.cancel(false);
+            circuitBreaker.onFailure();
+            timeouts.increment();
+            throw new UpstreamUnavailableException(name + " did not answer within "
+                    + Duration.ofNanos(timeoutNanos).toMillis() + " ms");
+        } catch (ExecutionException e) {
+            circuitBreaker.onFailure();
+            failures.increment();
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(name + " call failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.releasePermission();
+            throw new UpstreamUnavailableException("Interrupted while waiting for " + name);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * Nombre d'appels en cours, appels abandonnés compris.
+     */
+    public int getActiveCount() {
+        return maxConcurrentCalls - calls.availablePermits();
+    }
+
+    /**
+     * Arrête les appels en cours et retire les métriques du registre : une protection créée
+     * ensuite sous le même nom publie les siennes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        meters.forEach(registry::remove);
+    }
+
+    /**
+     * Lance une tentative si une place est libre. La réponse échoue lorsque toutes les
+     * tentatives lancées ont échoué.
+     */
+    private <T> boolean launch(Supplier<T> action, CompletableFuture<T> response, AtomicInteger attempts) {
+        if (!calls.tryAcquire()) {
+            return false;
+        }
+        attempts.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    response.complete(action.get());
+                } catch (Throwable e) {
+                    if (attempts.decrementAndGet() == 0) {
+                        response.completeExceptionally(e);
+                    }
+                } finally {
+                    calls.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // protection fermée entre-temps
+            attempts.decrementAndGet();
+            calls.release();
+            return false;
+        }
+        return true;
+    }
+
+    private Counter outcome(String outcome) {
+        return register(TourGuideMetrics.counter(registry, TourGuideMetrics.UPSTREAM_CALLS,
+                "Appels aux services distants par issue", "upstream", name, "outcome", outcome));
+    }
+
+    private <M extends Meter> M register(M meter) {
+        meters.add(meter);
+        return meter;
+    }
+}
@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.resilience;
+
+import java.time.Duration;
+
+/**
+ * Appel à un service distant non effectué ou abandonné : disjoncteur ouvert, trop d'appels
+ * en cours ou délai de réponse dépassé. L'appelant peut alors se replier sur une valeur
+ * déjà connue.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final Duration retryAfter;
+
+    public UpstreamUnavailableException(String message) {
+        this(message, DEFAULT_RETRY_AFTER);
+    }
+
+    /**
+     * @param retryAfter délai conseillé avant une nouvelle tentative
+     */
+    public UpstreamUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
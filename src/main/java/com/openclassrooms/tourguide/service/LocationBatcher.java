@@ -0,0 +1,190 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Regroupement des demandes de localisation adressées à GpsUtil.
+ *
+ * <p>Les demandes sont accumulées pendant une courte fenêtre, ou jusqu'à une taille de lot,
+ * puis envoyées ensemble avec un nombre borné d'appels simultanés. Chaque demandeur reçoit
+ * un {@link CompletableFuture} complété dès que sa propre localisation est connue : aucun
+ * thread n'attend pendant l'appel à GpsUtil, hormis ceux qui l'exécutent. Les demandes
+ * simultanées pour un même utilisateur, en attente dans la même fenêtre, partagent un seul
+ * appel.</p>
+ *
+ * <p>GpsUtil n'offrant pas d'appel groupé, un lot est envoyé sous forme d'appels unitaires
+ * en parallèle.</p>
+ */
+public class LocationBatcher implements AutoCloseable {
+    private final Function<UUID, VisitedLocation> locationLoader;
+    private final Executor executor;
+    // exécuteur créé par ce regroupement, arrêté à sa fermeture
+    private ExecutorService ownedExecutor;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Semaphore calls;
+    private final Map<UUID, CompletableFuture<VisitedLocation>> pending = new ConcurrentHashMap<>();
+    private final Queue<UUID> queue = new ConcurrentLinkedQueue<>();
+    // aucun envoi programmé, envoi en fin de fenêtre, ou envoi immédiat
+    private static final int IDLE = 0;
+    private static final int WINDOWED = 1;
+    private static final int IMMEDIATE = 2;
+    private final AtomicInteger flushState = new AtomicInteger(IDLE);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "gps-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Crée un regroupement disposant de son propre exécuteur, un thread virtuel par appel,
+     * arrêté avec lui : un appel refusé fait échouer la demande, il n'est jamais exécuté par
+     * le thread d'envoi.
+     */
+    public LocationBatcher(Function<UUID, VisitedLocation> locationLoader, TourGuideProperties.GpsBatch properties) {
+        this(locationLoader, Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gps-batch-", 0).factory()),
+                properties.getWindow(), properties.getMaxBatchSize(), properties.getParallelism());
+        this.ownedExecutor = (ExecutorService) executor;
+    }
+
+    /**
+     * @param locationLoader appel unitaire à GpsUtil
+     * @param executor exécuteur des appels ; il ne doit pas exécuter la tâche sur le thread
+     *                 appelant, réservé à l'envoi des lots
+     * @param window durée maximale d'accumulation d'un lot
+     * @param maxBatchSize taille au-delà de laquelle un lot est envoyé sans attendre la fin de la fenêtre
+     * @param parallelism nombre maximal d'appels simultanés
+     */
+    public LocationBatcher(Function<UUID, VisitedLocation> locationLoader, Executor executor, Duration window,
+                           int maxBatchSize, int parallelism) {
+        if (maxBatchSize <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("maxBatchSize and parallelism must be positive");
+        }
+        this.locationLoader = locationLoader;
+        this.executor = executor;
+        this.windowMillis = window.toMillis();
+        this.maxBatchSize = maxBatchSize;
+        this.calls = new Semaphore(parallelism);
+    }
+
+    /**
+     * Demande la localisation actuelle de l'utilisateur.
+     *
+     * @param userId identifiant de l'utilisateur
+     * @return sa localisation, à terme ; en échec si l'appel à GpsUtil échoue ou si le
+     *         regroupement est arrêté
+     */
+    public CompletableFuture<VisitedLocation> request(UUID userId) {
+        CompletableFuture<VisitedLocation> location = pending.computeIfAbsent(userId, id -> {
+            queue.add(id);
+            return new CompletableFuture<>();
+        });
+        if (pending.size() >= maxBatchSize) {
+            scheduleFlush(IMMEDIATE);
+        } else {
+            scheduleFlush(WINDOWED);
+        }
+        return location;
+    }
+
+    /**
+     * Nombre de demandes en attente d'envoi.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+        pending.values().forEach(location -> location.completeExceptionally(
+                new RejectedExecutionException("Location batcher is closed")));
+        pending.clear();
+        queue.clear();
+    }
+
+    /**
+     * Programme un envoi, sauf si un envoi au moins aussi proche l'est déjà : un lot plein
+     * avance l'envoi de fin de fenêtre, mais n'en programme qu'un seul.
+     */
+    private void scheduleFlush(int urgency) {
+        int state;
+        do {
+            state = flushState.get();
+            if (state >= urgency) {
+                return;
+            }
+        } while (!flushState.compareAndSet(state, urgency));
+        try {
+            scheduler.schedule(this::flush, urgency == IMMEDIATE ? 0 : windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            close();
+        }
+    }
+
+    /**
+     * Envoie les demandes en attente tant que des appels simultanés sont disponibles, sans
+     * jamais bloquer le thread d'envoi : les demandes restantes sont envoyées dès qu'un appel
+     * en cours se termine.
+     */
+    private void flush() {
+        flushState.set(IDLE);
+        while (!queue.isEmpty() && calls.tryAcquire()) {
+            UUID userId = queue.poll();
+            CompletableFuture<VisitedLocation> location = userId == null ? null : pending.remove(userId);
+            if (location == null) {
+                calls.release();
+                continue;
+            }
+            dispatch(userId, location);
+        }
+    }
+
+    private void dispatch(UUID userId, CompletableFuture<VisitedLocation> location) {
+        try {
+            executor.execute(() -> {
+                try {
+                    location.complete(locationLoader.apply(userId));
+                } catch (Throwable e) {
+                    location.completeExceptionally(e);
+                } finally {
+                    release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release();
+            location.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Libère un appel et relance l'envoi des demandes qui l'attendaient.
+     */
+    private void release() {
+        calls.release();
+        if (!queue.isEmpty()) {
+            scheduleFlush(IMMEDIATE);
+        }
+    }
+}
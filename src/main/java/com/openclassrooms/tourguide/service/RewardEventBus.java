@@ -0,0 +1,158 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * File d'événements « nouvelle localisation » consommée par un groupe dédié de threads
+ * calculant les récompenses.
+ *
+ * <p>Le suivi publie l'utilisateur dont la localisation vient d'être enregistrée et passe
+ * aussitôt au suivant : il n'attend plus le calcul des récompenses. Un utilisateur déjà en
+ * attente n'est pas publié une seconde fois, les mises à jour successives étant regroupées
+ * en une seule évaluation (le calcul porte sur toutes les localisations non encore
+ * évaluées). Un utilisateur est retiré des attentes avant son évaluation : une localisation
+ * arrivée pendant celle-ci provoque une nouvelle évaluation.</p>
+ *
+ * <p>La file est bornée : lorsqu'elle est pleine, la publication attend qu'une place se
+ * libère, ce qui ralentit le suivi plutôt que d'accumuler des événements sans limite.</p>
+ */
+public class RewardEventBus implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(RewardEventBus.class);
+
+    private final Consumer<User> handler;
+    private final BlockingQueue<User> queue;
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+    // événements publiés et non encore traités
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final Counter published = TourGuideMetrics.counter(TourGuideMetrics.REWARD_EVENTS_PUBLISHED,
+            "Localisations publiées pour le calcul des récompenses");
+    private final Counter coalesced = TourGuideMetrics.counter(TourGuideMetrics.REWARD_EVENTS_COALESCED,
+            "Localisations regroupées avec une évaluation déjà en attente");
+    private volatile boolean closed;
+
+    public RewardEventBus(Consumer<User> handler, TourGuideProperties.RewardEvents properties) {
+        this(handler, properties.getCapacity(), properties.getWorkers());
+    }
+
+    /**
+     * @param handler calcul des récompenses d'un utilisateur
+     * @param capacity nombre maximal d'utilisateurs en attente
+     * @param workerCount nombre de threads consommant la file
+     */
+    public RewardEventBus(Consumer<User> handler, int capacity, int workerCount) {
+        if (capacity <= 0 || workerCount <= 0) {
+            throw new IllegalArgumentException("capacity and workerCount must be positive");
+        }
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        TourGuideMetrics.gauge(TourGuideMetrics.REWARD_EVENTS_QUEUED, "Utilisateurs en attente de calcul des récompenses",
+                this, RewardEventBus::getQueuedCount);
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::consume, "reward-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Signale une nouvelle localisation de l'utilisateur. Sans effet si une évaluation est
+     * déjà en attente pour lui.
+     *
+     * @param user l'utilisateur dont la localisation vient d'être enregistrée
+     * @throws RejectedExecutionException si la file est fermée
+     */
+    public void publish(User user) {
+        if (closed) {
+            throw new RejectedExecutionException("Reward event bus is closed");
+        }
+        if (!pending.add(user.getUserId())) {
+            coalesced.increment();
+            return;
+        }
+        inProgress.incrementAndGet();
+        published.increment();
+        try {
+            queue.put(user);
+        } catch (InterruptedException e) {
+            pending.remove(user.getUserId());
+            inProgress.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while publishing " + user.getUserName(), e);
+        }
+    }
+
+    /**
+     * Nombre d'utilisateurs en attente d'évaluation.
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Attend que tous les événements publiés aient été traités.
+     *
+     * @param timeout durée maximale d'attente
+     * @param unit unité de {@code timeout}
+     * @return {@code true} si plus aucun événement n'est en cours
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (inProgress.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Traite les utilisateurs un par un : un thread ne retient jamais d'utilisateurs en
+     * attente pendant qu'il en évalue un autre, les threads libres les prennent aussitôt.
+     */
+    private void consume() {
+        while (!closed) {
+            User user;
+            try {
+                user = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // retiré avant l'évaluation : une localisation arrivée pendant celle-ci sera de nouveau publiée
+            pending.remove(user.getUserId());
+            try {
+                handler.accept(user);
+            } catch (RuntimeException e) {
+                logger.error("Reward calculation failed for {}", user.getUserName(), e);
+            } finally {
+                inProgress.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.resilience.UpstreamGuard;
+import rewardCentral.RewardCentral;
+
+/**
+ * Cache des points de récompense renvoyés par {@link RewardCentral}, indexé par
+ * couple (attraction, utilisateur).
+ *
+ * <p>Le cache est borné en taille et ses entrées expirent après une durée configurable.
+ * Les appels simultanés pour une même clé absente sont regroupés : un seul appel à
+ * RewardCentral est effectué, dans le thread du premier appelant, et les autres
+ * appelants attendent son résultat. Un appel en échec n'est pas conservé.</p>
+ *
+ * <p>Les appels à RewardCentral passent par un {@link UpstreamGuard} : les points en cache
+ * restent servis lorsque le service ne répond plus, et une absence échoue sans attendre
+ * tant que le disjoncteur est ouvert.</p>
+ */
+public class RewardPointsCache implements AutoCloseable {
+
+    private final RewardCentral rewardCentral;
+    private final UpstreamGuard guard;
+    private final AsyncCache<Key, Integer> cache;
+    private final Timer rewardCentralTimer = TourGuideMetrics.timer(TourGuideMetrics.REWARD_CENTRAL_POINTS,
+            "Durée des appels à RewardCentral.getAttractionRewardPoints");
+
+    public RewardPointsCache(RewardCentral rewardCentral, TourGuideProperties.RewardPointsCache properties,
+                             UpstreamGuard guard) {
+        this.rewardCentral = rewardCentral;
+        this.guard = guard;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(TourGuideMetrics.registry(), cache, "rewardPoints");
+    }
+
+    /**
+     * Retourne les points de récompense de l'attraction pour l'utilisateur, depuis le cache
+     * si possible, sinon en interrogeant RewardCentral.
+     *
+     * @param attractionId identifiant de l'attraction
+     * @param userId identifiant de l'utilisateur
+     * @return les points de récompense
+     */
+    public int getRewardPoints(UUID attractionId, UUID userId) {
+        try {
+            return getRewardPointsAsync(attractionId, userId, Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Variante asynchrone de {@link #getRewardPoints(UUID, UUID)} : en cas d'absence dans le
+     * cache, l'appel à RewardCentral est exécuté par {@code executor}.
+     *
+     * @param attractionId identifiant de l'attraction
+     * @param userId identifiant de l'utilisateur
+     * @param executor exécuteur de l'appel à RewardCentral
+     * @return les points de récompense, à terme
+     */
+    public CompletableFuture<Integer> getRewardPointsAsync(UUID attractionId, UUID userId,
+                                                          Executor executor) {
+        CompletableFuture<Integer> loading = new CompletableFuture<>();
+        CompletableFuture<Integer> points = cache.get(new Key(attractionId, userId), (key, cacheExecutor) -> loading);
+        if (points == loading) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        loading.complete(rewardCentralTimer.record(
+                                () -> guard.call(() -> rewardCentral.getAttractionRewardPoints(attractionId, userId))));
+                    } catch (Throwable e) {
+                        loading.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // retiré du cache : un appel suivant pourra réessayer
+                loading.completeExceptionally(e);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Retourne les points déjà connus pour ce couple, sans interroger RewardCentral ni
+     * modifier les statistiques du cache.
+     *
+     * @return les points en cache, ou {@code null} s'ils sont absents ou en cours de calcul
+     */
+    public Integer getIfPresent(UUID attractionId, UUID userId) {
+        CompletableFuture<Integer> points = cache.asMap().get(new Key(attractionId, userId));
+        return points != null && points.isDone() && !points.isCompletedExceptionally() ? points.join() : null;
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public long estimatedSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    /**
+     * Ferme la protection des appels, dont le cache est propriétaire.
+     */
+    @Override
+    public void close() {
+        guard.close();
+    }
+
+    private record Key(UUID attractionId, UUID userId) {
+    }
+}
@@ -3,12 +3,29 @@ package com.openclassrooms.tourguide.service;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import com.openclassrooms.tourguide.TourGuideProperties;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.GeoDistance;
+import com.openclassrooms.tourguide.attraction.NearestAttractionTable;
+import com.openclassrooms.tourguide.executor.TaskExecutors;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.pipeline.BatchPipeline;
+import com.openclassrooms.tourguide.pipeline.BatchReport;
+import com.openclassrooms.tourguide.pipeline.ConcurrencyLimit;
+import com.openclassrooms.tourguide.resilience.UpstreamGuard;
 import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
@@ -18,107 +35,217 @@ import com.openclassrooms.tourguide.user.UserReward;
 
 @Service
 public class RewardsService {
-    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+    private static final int ATTRACTION_PROXIMITY_RANGE = 200;
 
     // proximity in miles
     private final Logger logger = LoggerFactory.getLogger(RewardsService.class);
     private final int defaultProximityBuffer = 10;
-    private int proximityBuffer = defaultProximityBuffer;
+    private volatile int proximityBuffer = defaultProximityBuffer;
     private final RewardCentral rewardsCentral;
     private final GpsUtil gpsUtil;
-    private final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+    private final Executor executor;
+    private final RewardPointsCache rewardPointsCache;
+    private final BatchPipeline pipeline;
+    private final ConcurrencyLimit distanceStage;
+    private final ConcurrencyLimit rewardPointsStage;
+    private final Timer calculateRewardsTimer = TourGuideMetrics.timer(TourGuideMetrics.CALCULATE_REWARDS,
+            "Durée du calcul des récompenses d'un utilisateur");
+    private final AttractionCatalog attractionCatalog;
+    // incrémentée à chaque changement des règles de proximité ou du catalogue : les localisations déjà évaluées sont alors réévaluées
+    private final AtomicInteger rewardsGeneration = new AtomicInteger(1);
 
     public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
+        this(gpsUtil, rewardCentral, TaskExecutors.standalone("rewards", new TourGuideProperties.Pool()));
+    }
+
+    public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, Executor executor) {
+        this(gpsUtil, rewardCentral, executor, new TourGuideProperties());
+    }
+
+    public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, Executor executor,
+                          TourGuideProperties properties) {
+        this(gpsUtil, rewardCentral, executor, properties, new AttractionCatalog(gpsUtil, properties.getAttractions()),
+                TourGuideMetrics.registry());
+    }
+
+    @Autowired
+    public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral,
+                          @Qualifier("rewardsExecutor") Executor executor, TourGuideProperties properties,
+                          AttractionCatalog attractionCatalog, MeterRegistry meterRegistry) {
         this.rewardsCentral = rewardCentral;
         this.gpsUtil = gpsUtil;
+        this.executor = executor;
+        this.rewardPointsCache = new RewardPointsCache(rewardCentral, properties.getRewardPointsCache(),
+                new UpstreamGuard("rewardCentral", properties.getResilience().getRewardCentral(), meterRegistry));
+        this.pipeline = new BatchPipeline("rewards", executor, properties.getPipeline());
+        TourGuideProperties.Stages stages = properties.getPipeline().getStages();
+        this.distanceStage = new ConcurrencyLimit("distance", stages.getDistance());
+        this.rewardPointsStage = new ConcurrencyLimit("reward-points", stages.getRewardPoints());
+        this.attractionCatalog = attractionCatalog;
+        attractionCatalog.addListener(snapshot -> rewardsGeneration.incrementAndGet());
+    }
+
+    /**
+     * Arrête les appels à RewardCentral en cours à la fermeture du contexte Spring.
+     */
+    @PreDestroy
+    public void close() {
+        rewardPointsCache.close();
     }
 
     public void setProximityBuffer(int proximityBuffer) {
         this.proximityBuffer = proximityBuffer;
+        rewardsGeneration.incrementAndGet();
     }
 
     @SuppressWarnings("unused")
     public void setDefaultProximityBuffer() {
         proximityBuffer = defaultProximityBuffer;
+        rewardsGeneration.incrementAndGet();
+    }
+
+    /**
+     * Retourne l'index spatial de la version courante du catalogue des attractions.
+     *
+     * @return l'index des attractions du catalogue {@link GpsUtil}
+     */
+    public AttractionIndex getAttractionIndex() {
+        return attractionCatalog.current().index();
+    }
+
+    /**
+     * Retourne la table des attractions les plus proches par cellule, liée à la version
+     * courante du catalogue.
+     */
+    public NearestAttractionTable getNearestAttractionTable() {
+        return attractionCatalog.current().nearest();
+    }
+
+    /**
+     * Retourne les {@code k} attractions les plus proches de la localisation, triées par
+     * distance croissante, à partir des réponses précalculées pour sa cellule.
+     */
+    public List<Attraction> getNearestAttractions(Location location, int k) {
+        return getNearestAttractionTable().findNearest(location, k);
+    }
+
+    public AttractionCatalog getAttractionCatalog() {
+        return attractionCatalog;
     }
 
     /**
      * Calcule et attribue les récompenses pour un utilisateur donné.
      *
-     * <p>Pour chaque localisation visitée de l'utilisateur, cette méthode parcourt
-     * la liste des attractions (en parallèle) et vérifie si l'utilisateur est
-     * proche d'une attraction et n'a pas encore reçu de récompense pour celle-ci.
-     * Si ces conditions sont remplies, une nouvelle récompense est ajoutée
+     * <p>Seules les localisations ajoutées depuis le précédent calcul sont évaluées : les
+     * localisations plus anciennes ont déjà produit leurs récompenses. Tout changement du
+     * rayon de proximité ou du catalogue des attractions provoque une réévaluation complète
+     * de l'historique. Le calcul s'appuie du début à la fin sur une même version du
+     * catalogue.</p>
+     *
+     * <p>Pour chaque nouvelle localisation visitée de l'utilisateur, cette méthode interroge
+     * l'index spatial pour ne récupérer que les attractions situées dans le rayon de
+     * proximité, puis vérifie (en parallèle) que l'utilisateur n'a pas encore reçu de
+     * récompense pour celles-ci. Si c'est le cas, une nouvelle récompense est ajoutée
      * à l'utilisateur.</p>
      *
-     * <p>Cette méthode est optimisée pour le traitement parallèle sur la liste
-     * des attractions afin de réduire le temps de calcul.</p>
+     * <p>Le parallélisme porte sur les attractions candidates afin de paralléliser
+     * les appels à {@link RewardCentral}.</p>
      *
      * @param user l'utilisateur pour lequel les récompenses doivent être calculées
      */
 	public void calculateRewards(User user) {
-		List<VisitedLocation> userLocations = user.getVisitedLocations();
-        List<Attraction> attractions = gpsUtil.getAttractions();
+        Timer.Sample sample = Timer.start();
+        try {
+            calculateNewRewards(user);
+        } finally {
+            sample.stop(calculateRewardsTimer);
+        }
+	}
 
-        userLocations.forEach(visitedLocation -> attractions.parallelStream()
-                .filter(a -> (user.getUserRewards().stream().noneMatch(r -> r.attraction.attractionName.equals(a.attractionName))) && nearAttraction(visitedLocation, a))
+    private void calculateNewRewards(User user) {
+        int generation = rewardsGeneration.get();
+        int buffer = proximityBuffer;
+        int evaluated = user.getEvaluatedLocationCount(generation);
+        int locationCount = user.getVisitedLocationCount();
+		List<VisitedLocation> newLocations = user.getVisitedLocationsSince(evaluated);
+        AttractionIndex index = getAttractionIndex();
+
+        newLocations.forEach(visitedLocation -> distanceStage.call(() -> index.findWithinMiles(visitedLocation.location, buffer))
+                .parallelStream()
+                .filter(a -> !user.hasRewardFor(a))
                 .forEach(a -> user.addUserReward(new UserReward(visitedLocation, a, getRewardPoints(a, user)))));
-	}
+
+        user.markLocationsEvaluated(generation, locationCount);
+    }
 
     /**
      * Calcule les récompenses pour une liste d'utilisateurs en parallèle.
      *
-     * <p>Cette méthode utilise un pool de threads dont la taille est proportionnelle
-     * au nombre de cœurs disponibles pour paralléliser le calcul des récompenses
-     * pour tous les utilisateurs de la liste. Chaque utilisateur est traité de
-     * manière asynchrone avec {@link CompletableFuture}.</p>
+     * <p>Les utilisateurs sont traités en flux sur le pool dédié aux récompenses, avec un
+     * nombre borné de calculs en cours : la mémoire utilisée ne dépend pas de la taille de
+     * la liste. Un calcul en échec est repris selon {@code tourguide.pipeline.max-attempts}.
+     * Le pool n'est pas arrêté à la fin du lot et peut donc servir aux lots suivants.</p>
      *
      * @param users la liste des utilisateurs pour lesquels les récompenses doivent être calculées
+     * @return le bilan du traitement, dont les utilisateurs en échec
      */
-    public void calculateRewardsForAllUsers(List<User> users) {
-
-        try {
-            List<CompletableFuture<Void>> futures = users.stream()
-                    .map(user -> CompletableFuture.runAsync(() -> calculateRewards(user), executor))
-                    .toList();
-
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        } catch (Exception e) {
-            logger.error("Error while calculating rewards for all users", e);
-        }
-        finally {
-            executor.shutdown();
-        }
+    public BatchReport<User> calculateRewardsForAllUsers(List<User> users) {
+        return pipeline.run(users.iterator(), this::calculateRewards);
     }
 
 	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
-        int attractionProximityRange = 200;
-        return !(getDistance(attraction, location) > attractionProximityRange);
+        return !(getDistance(attraction, location) > ATTRACTION_PROXIMITY_RANGE);
 	}
 
-	private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-		return !(getDistance(attraction, visitedLocation.location) > proximityBuffer);
-	}
+    /**
+     * Retourne les attractions situées dans le rayon de proximité de la localisation,
+     * c'est-à-dire celles pour lesquelles {@link #isWithinAttractionProximity} est vrai.
+     *
+     * @param location la localisation de référence
+     * @return les attractions proches, dans un ordre non spécifié
+     */
+    public List<Attraction> getAttractionsWithinProximity(Location location) {
+        return getAttractionIndex().findWithinMiles(location, ATTRACTION_PROXIMITY_RANGE);
+    }
 
 	private int getRewardPoints(Attraction attraction, User user) {
-		return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+		return rewardPointsStage.call(() -> rewardPointsCache.getRewardPoints(attraction.attractionId, user.getUserId()));
 	}
 
+    /**
+     * Retourne les points de récompense de l'attraction pour l'utilisateur. Les points sont
+     * mis en cache : seul le premier appel pour un couple (attraction, utilisateur) interroge
+     * {@link RewardCentral}.
+     */
     public int getRewardPointsForUser(Attraction attraction, UUID userId) {
-        return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, userId);
+        return rewardPointsCache.getRewardPoints(attraction.attractionId, userId);
     }
 
-	public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
+    /**
+     * Variante asynchrone de {@link #getRewardPointsForUser(Attraction, UUID)} : l'éventuel
+     * appel à {@link RewardCentral} est exécuté sur le pool dédié aux récompenses, ce qui
+     * permet de lancer plusieurs recherches en parallèle.
+     */
+    public CompletableFuture<Integer> getRewardPointsForUserAsync(Attraction attraction, UUID userId) {
+        return getRewardPointsForUserAsync(attraction, userId, executor);
+    }
 
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                               + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
+    /**
+     * Variante de {@link #getRewardPointsForUserAsync(Attraction, UUID)} exécutant l'éventuel
+     * appel à {@link RewardCentral} sur {@code executor} ; le résultat échoue si celui-ci
+     * refuse la tâche.
+     */
+    public CompletableFuture<Integer> getRewardPointsForUserAsync(Attraction attraction, UUID userId,
+                                                                  Executor executor) {
+        return rewardPointsCache.getRewardPointsAsync(attraction.attractionId, userId, executor);
+    }
 
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+    public RewardPointsCache getRewardPointsCache() {
+        return rewardPointsCache;
+    }
+
+	public double getDistance(Location loc1, Location loc2) {
+        return GeoDistance.miles(loc1, loc2);
 	}
 
 }
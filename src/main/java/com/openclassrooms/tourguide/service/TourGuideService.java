@@ -1,25 +1,54 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.TourGuideProperties;
+import com.openclassrooms.tourguide.attraction.NearestAttractionTable;
+import com.openclassrooms.tourguide.cluster.ShardRouter;
 import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
+import com.openclassrooms.tourguide.executor.TaskExecutors;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.history.MappedLocationStore;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.pipeline.BatchPipeline;
+import com.openclassrooms.tourguide.pipeline.BatchReport;
+import com.openclassrooms.tourguide.pipeline.ConcurrencyLimit;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.repository.UserRepository;
+import com.openclassrooms.tourguide.resilience.UpstreamGuard;
+import com.openclassrooms.tourguide.resilience.UpstreamUnavailableException;
 import com.openclassrooms.tourguide.tracker.Tracker;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
@@ -32,124 +61,476 @@ public class TourGuideService {
 	private final Logger logger = LoggerFactory.getLogger(TourGuideService.class);
 	private final GpsUtil gpsUtil;
 	private final RewardsService rewardsService;
-	private final TripPricer tripPricer = new TripPricer();
+	private final TripDealsCache tripDealsCache;
+	// actualisation périodique des offres, null si elle n'est pas activée
+	private final ScheduledExecutorService tripDealsRefresher;
 	public final Tracker tracker;
-    private final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+    private final Executor executor;
+    // traitements déportés des requêtes HTTP, cloisonnés du suivi
+    private final Executor requestExecutor;
+    // historique persistant des localisations, null s'il n'est pas activé
+    private final MappedLocationStore historyStore;
+    private final UserRepository userRepository;
+    // répartition des utilisateurs entre instances, null sur une instance seule
+    private final ShardRouter shardRouter;
+    private final BatchPipeline pipeline;
+    private final ConcurrencyLimit gpsStage;
+    private final UpstreamGuard gpsGuard;
+    private final LocationBatcher locationBatcher;
+    // calcul des récompenses hors du suivi, null s'il est fait dans le suivi
+    private final RewardEventBus rewardEventBus;
+    private final Timer gpsTimer = TourGuideMetrics.timer(TourGuideMetrics.GPS_USER_LOCATION,
+            "Durée des appels à GpsUtil.getUserLocation");
+    private final Counter gpsFallbacks = TourGuideMetrics.counter(TourGuideMetrics.UPSTREAM_FALLBACKS,
+            "Dernières valeurs connues servies faute de réponse du service", "upstream", "gps");
+    private final Counter tripPricerFallbacks = TourGuideMetrics.counter(TourGuideMetrics.UPSTREAM_FALLBACKS,
+            "Dernières valeurs connues servies faute de réponse du service", "upstream", "tripPricer");
+    // complété lorsque tous les utilisateurs internes sont chargés
+    private final CompletableFuture<Void> usersReady;
 
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+		this(gpsUtil, rewardsService, TaskExecutors.standalone("tracking", new TourGuideProperties.Pool()),
+				new TourGuideProperties());
+	}
+
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, Executor executor,
+							TourGuideProperties properties) {
+		this(gpsUtil, rewardsService, new TripPricer(), executor, properties, new InMemoryUserRepository(),
+				Optional.empty(), Optional.empty(), TourGuideMetrics.registry());
+	}
+
+	@Autowired
+	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TripPricer tripPricer,
+							@Qualifier("trackingExecutor") Executor executor, TourGuideProperties properties,
+							UserRepository userRepository, Optional<MappedLocationStore> historyStore,
+							Optional<ShardRouter> shardRouter, MeterRegistry meterRegistry) {
 		this.gpsUtil = gpsUtil;
 		this.rewardsService = rewardsService;
+		this.executor = executor;
+		this.requestExecutor = TaskExecutors.bulkhead("requests", properties.getExecutors().getRequests());
+		this.userRepository = userRepository;
+		this.pipeline = new BatchPipeline("tracking", executor, properties.getPipeline());
+		this.gpsStage = new ConcurrencyLimit("gps", properties.getPipeline().getStages().getGps());
+		this.gpsGuard = new UpstreamGuard("gps", properties.getResilience().getGps(), meterRegistry);
+		this.locationBatcher = new LocationBatcher(this::fetchUserLocation, properties.getGpsBatch());
+		this.historyStore = historyStore.orElse(null);
+		this.shardRouter = shardRouter.orElse(null);
+		this.rewardEventBus = properties.getRewardEvents().isEnabled()
+				? new RewardEventBus(rewardsService::calculateRewards, properties.getRewardEvents()) : null;
 		
 		Locale.setDefault(Locale.US);
 
         logger.info("TestMode enabled");
-        logger.debug("Initializing users");
-        initializeInternalUsers();
-        logger.debug("Finished initializing users");
-        tracker = new Tracker(this);
+        this.usersReady = bootstrapUsers(properties.getUsers());
+        this.tripDealsCache = new TripDealsCache(tripPricer, tripPricerApiKey, properties.getTripDeals(),
+                new UpstreamGuard("tripPricer", properties.getResilience().getTripPricer(), meterRegistry));
+        this.tripDealsRefresher = properties.getTripDeals().isPrecompute()
+                ? scheduleTripDealsRefresh(properties.getTripDeals().getRefreshInterval()) : null;
+        tracker = new Tracker(this, properties.getTracker());
 		addShutDownHook();
 	}
 
+    /**
+     * Indique si le chargement des utilisateurs internes est terminé avec succès.
+     */
+    public boolean isReady() {
+        return usersReady.isDone() && !usersReady.isCompletedExceptionally();
+    }
+
+    /**
+     * Retourne une étape complétée à la fin du chargement des utilisateurs internes, ou en
+     * échec si ce chargement a échoué.
+     */
+    public CompletionStage<Void> whenReady() {
+        return usersReady.minimalCompletionStage();
+    }
+
 	public List<UserReward> getUserRewards(User user) {
 		return user.getUserRewards();
 	}
 
 	public VisitedLocation getUserLocation(User user) {
-        return (!user.getVisitedLocations().isEmpty()) ? user.getLastVisitedLocation()
+        return (user.getVisitedLocationCount() > 0) ? user.getLastVisitedLocation()
                 : trackUserLocation(user);
 	}
 
+    /**
+     * Variante asynchrone de {@link #getUserLocation(User)} : si l'utilisateur n'a encore
+     * aucune localisation, le suivi est exécuté sur un thread virtuel réservé aux requêtes,
+     * sans attendre derrière le suivi périodique.
+     *
+     * @param user l'utilisateur
+     * @return sa dernière localisation connue, à terme ; en échec si trop de requêtes sont
+     *         déjà en cours
+     */
+    public CompletableFuture<VisitedLocation> getUserLocationAsync(User user) {
+        return (user.getVisitedLocationCount() > 0) ? CompletableFuture.completedFuture(user.getLastVisitedLocation())
+                : TaskExecutors.supplyAsync(() -> trackUserLocation(user), requestExecutor);
+    }
+
+    /**
+     * Retourne l'historique complet des localisations de l'utilisateur : depuis l'historique
+     * persistant s'il est activé, sinon les localisations conservées en mémoire.
+     */
+    public List<VisitedLocation> getUserLocationHistory(User user) {
+        return historyStore != null ? historyStore.read(user.getUserId(), 0) : user.getVisitedLocations();
+    }
+
 	public User getUser(String userName) {
-		return internalUserMap.get(userName);
+		return userRepository.findByUserName(userName);
 	}
 
+    /**
+     * Retourne un instantané immuable de tous les utilisateurs, obtenu sans recopie.
+     */
 	public List<User> getAllUsers() {
-		return new ArrayList<>(internalUserMap.values());
+		return userRepository.snapshot();
+	}
+
+    /**
+     * Retourne les utilisateurs suivis par cette instance : tous, ou seulement ceux qui lui
+     * reviennent si les utilisateurs sont répartis entre plusieurs instances. La répartition
+     * est réévaluée à chaque appel et suit donc les arrivées et départs d'instances.
+     */
+	public List<User> getTrackedUsers() {
+		List<User> users = getAllUsers();
+		return shardRouter == null ? users
+				: users.stream().filter(user -> shardRouter.isLocal(user.getUserName())).toList();
 	}
 
 	public void addUser(User user) {
-		if (!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
-		}
+		userRepository.add(user);
 	}
 
+    /**
+     * Retourne les offres de voyage de l'utilisateur. Elles sont mises en cache par profil
+     * (adultes, enfants, durée, total des points de récompense) : TripPricer n'est interrogé
+     * qu'à la première demande ou lorsque ce profil change. Si TripPricer ne répond pas, les
+     * dernières offres de l'utilisateur sont renvoyées.
+     *
+     * @throws UpstreamUnavailableException si TripPricer ne répond pas et que l'utilisateur
+     *                                      n'a encore reçu aucune offre
+     */
 	public List<Provider> getTripDeals(User user) {
 		int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(UserReward::getRewardPoints).sum();
-		List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
-				user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
-				user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
-		user.setTripDeals(providers);
+		List<Provider> providers;
+		try {
+			providers = tripDealsCache.getTripDeals(new TripDealsCache.Key(user.getUserId(),
+					user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
+					user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints));
+		} catch (UpstreamUnavailableException e) {
+			List<Provider> previous = user.getTripDeals();
+			if (previous.isEmpty()) {
+				throw e;
+			}
+			tripPricerFallbacks.increment();
+			return previous;
+		}
+		if (providers != user.getTripDeals()) {
+			user.setTripDeals(providers);
+		}
 		return providers;
 	}
 
+    public TripDealsCache getTripDealsCache() {
+        return tripDealsCache;
+    }
+
+    private ScheduledExecutorService scheduleTripDealsRefresh(Duration interval) {
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "trip-deals");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                tripDealsCache.refresh(pipeline);
+            } catch (RuntimeException e) {
+                logger.error("Trip deals refresh failed", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        return refresher;
+    }
+
+    /**
+     * Variante asynchrone de {@link #getTripDeals(User)}, exécutée sur un thread virtuel
+     * réservé aux requêtes ; en échec si trop de requêtes sont déjà en cours.
+     */
+    public CompletableFuture<List<Provider>> getTripDealsAsync(User user) {
+        return TaskExecutors.supplyAsync(() -> getTripDeals(user), requestExecutor);
+    }
+
     /**
      * Repère la localisation actuelle d'un utilisateur, l'ajoute à sa liste de visites
-     * et calcule les récompenses associées à cette visite.
+     * et calcule les récompenses associées à cette visite. Si
+     * {@code tourguide.reward-events.enabled} est activé, le calcul est confié à
+     * {@link RewardEventBus} et se termine après le retour de la méthode.
+     *
+     * <p>Si GpsUtil ne répond pas dans le délai ou que son disjoncteur est ouvert, la dernière
+     * localisation connue est renvoyée, sans être enregistrée une seconde fois.</p>
      *
      * @param user l'utilisateur dont la localisation doit être suivie
      * @return la {@link VisitedLocation} correspondant à la localisation enregistrée
+     * @throws UpstreamUnavailableException si GpsUtil ne répond pas et que l'utilisateur n'a
+     *                                      encore aucune localisation
      */
 	public VisitedLocation trackUserLocation(User user) {
-		VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-		user.addToVisitedLocations(visitedLocation);
-		rewardsService.calculateRewards(user);
+		VisitedLocation visitedLocation;
+		try {
+			visitedLocation = fetchUserLocation(user.getUserId());
+		} catch (UpstreamUnavailableException e) {
+			return lastKnownLocation(user, e);
+		}
+		recordUserLocation(user, visitedLocation);
 		return visitedLocation;
 	}
 
+    private VisitedLocation fetchUserLocation(UUID userId) {
+        return gpsStage.call(() -> gpsTimer.record(() -> gpsGuard.call(() -> gpsUtil.getUserLocation(userId))));
+    }
+
+    private VisitedLocation lastKnownLocation(User user, UpstreamUnavailableException unavailable) {
+        if (user.getVisitedLocationCount() == 0) {
+            throw unavailable;
+        }
+        gpsFallbacks.increment();
+        return user.getLastVisitedLocation();
+    }
+
+    /**
+     * Variante groupée de {@link #trackUserLocation(User)} : les demandes de localisation sont
+     * regroupées par {@link LocationBatcher} et envoyées à GpsUtil avec un parallélisme borné,
+     * sans bloquer de thread par utilisateur pendant l'appel. Chaque localisation est
+     * enregistrée, et ses récompenses calculées, dès qu'elle est connue. Comme pour
+     * {@link #trackUserLocation(User)}, la dernière localisation connue est retenue si
+     * GpsUtil ne répond pas.
+     *
+     * @param users les utilisateurs à suivre
+     * @return les localisations enregistrées, dans l'ordre des utilisateurs, à terme ; en échec
+     *         si le suivi d'au moins un utilisateur a échoué
+     */
+    public CompletableFuture<List<VisitedLocation>> trackUserLocationsBatch(Collection<User> users) {
+        List<CompletableFuture<VisitedLocation>> locations = users.stream().map(this::requestUserLocation).toList();
+        return CompletableFuture.allOf(locations.toArray(new CompletableFuture[0]))
+                .thenApply(done -> locations.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Suivi d'un utilisateur par une demande regroupée : la localisation est enregistrée, et
+     * ses récompenses calculées, dès qu'elle est connue.
+     *
+     * @return la localisation de cet utilisateur seul, à terme
+     */
+    private CompletableFuture<VisitedLocation> requestUserLocation(User user) {
+        return locationBatcher.request(user.getUserId())
+                .handleAsync((visitedLocation, error) -> {
+                    if (error == null) {
+                        recordUserLocation(user, visitedLocation);
+                        return visitedLocation;
+                    }
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause instanceof UpstreamUnavailableException unavailable) {
+                        return lastKnownLocation(user, unavailable);
+                    }
+                    throw error instanceof CompletionException completion ? completion
+                            : new CompletionException(error);
+                }, executor);
+    }
+
+    private void recordUserLocation(User user, VisitedLocation visitedLocation) {
+		storeUserLocation(user, visitedLocation);
+		evaluateRewards(user);
+    }
+
+    private void storeUserLocation(User user, VisitedLocation visitedLocation) {
+		user.addToVisitedLocations(visitedLocation);
+		if (historyStore != null) {
+			historyStore.append(visitedLocation);
+		}
+    }
+
+    private void evaluateRewards(User user) {
+		if (rewardEventBus != null) {
+			rewardEventBus.publish(user);
+		} else {
+			rewardsService.calculateRewards(user);
+		}
+    }
+
+    /**
+     * File des calculs de récompenses, ou {@code null} si les récompenses sont calculées
+     * pendant le suivi ({@code tourguide.reward-events.enabled=false}).
+     */
+    public RewardEventBus getRewardEventBus() {
+        return rewardEventBus;
+    }
+
     /**
      * Repère les localisations de tous les utilisateurs passés en paramètre de manière
-     * parallèle, en utilisant un pool de threads dimensionné en fonction du nombre de cœurs
-     * disponibles sur la machine. Chaque utilisateur est traité de manière asynchrone.
+     * parallèle, en utilisant le pool de threads borné dédié au suivi. Les utilisateurs sont
+     * traités en flux avec un nombre borné de suivis en cours ; le pool reste disponible pour
+     * les lots suivants.
      *
      * <p>Cette méthode permet de réduire le temps total de traitement lorsqu'il y a un grand
      * nombre d'utilisateurs.</p>
      *
      * Aucun Return de la localisation des utilisateurs n'est nécéssaire. Car elle est persisté avec calculateRewards
-     * dans la classe User. Si besoin, on peut passer par une map<User, VisitedLocation> si cela devient nécessaire.
+     * dans la classe User. Seul le bilan du traitement est retourné, avec les utilisateurs en échec.
+     *
+     * <p>Une reprise ne rejoue que ce qui a échoué : une localisation déjà enregistrée ne l'est
+     * pas une seconde fois, seul le calcul des récompenses est repris. Les utilisateurs dont la
+     * localisation est enregistrée mais les récompenses en échec sont retenus jusqu'à la fin de
+     * leur reprise.</p>
      *
      * @param users la liste des utilisateurs dont les localisations doivent être suivies
+     * @return le bilan du traitement
      */
-    public void trackUsersLocationsParallel(List<User> users) {
-
-        try {
-            List<CompletableFuture<VisitedLocation>> futures = users.stream()
-                    .map(user -> CompletableFuture.supplyAsync(() -> trackUserLocation(user), executor))
-                    .toList();
-
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        }catch (Exception e ) {
-            logger.error("Error while tracking users locations", e);
-        } finally {
-            executor.shutdown();
-        }
+    public BatchReport<User> trackUsersLocationsParallel(List<User> users) {
+        Set<UUID> located = ConcurrentHashMap.newKeySet();
+        return pipeline.run(users.iterator(), user -> {
+            if (located.contains(user.getUserId())) {
+                evaluateRewards(user);
+                located.remove(user.getUserId());
+                return;
+            }
+            int locationCount = user.getVisitedLocationCount();
+            try {
+                trackUserLocation(user);
+            } catch (RuntimeException e) {
+                if (user.getVisitedLocationCount() > locationCount) {
+                    // localisation enregistrée, récompenses en échec
+                    located.add(user.getUserId());
+                }
+                throw e;
+            }
+        });
     }
 
     /**
      * Retourne les cinq attractions les plus proches d'une localisation donnée.
      *
-     * <p>Les attractions sont triées par distance croissante depuis la localisation de l'utilisateur.</p>
+     * <p>Les attractions sont triées par distance croissante depuis la localisation de l'utilisateur.
+     * Seules les quelques attractions candidates précalculées pour la cellule de la localisation
+     * sont reclassées, et les points de récompense des cinq attractions sont recherchés en
+     * parallèle.</p>
      *
      * @param visitedLocation la localisation de l'utilisateur
      * @return une liste de cinq {@link NearbyAttractionDTO} représentant les attractions les plus proches
      */
 	public List<NearbyAttractionDTO> getFiveNearestByAttractions(VisitedLocation visitedLocation) {
-		List<Attraction> attractions = gpsUtil.getAttractions();
-
-        return attractions.stream()
-                .sorted(Comparator.comparingDouble(p -> rewardsService.getDistance(p, visitedLocation.location)))
-                .limit(5)
-                .map(a -> createNearbyAttractionDTO(a, visitedLocation))
-                .collect(Collectors.toList());
+        return getFiveNearestByAttractionsAsync(visitedLocation).join();
 	}
 
+    /**
+     * Variante asynchrone de {@link #getFiveNearestByAttractions(VisitedLocation)} : les cinq
+     * recherches de points de récompense sont lancées simultanément, sur des threads virtuels
+     * réservés aux requêtes plutôt que sur le pool des récompenses.
+     *
+     * @param visitedLocation la localisation de l'utilisateur
+     * @return les cinq attractions les plus proches, triées par distance croissante, à terme
+     */
+    public CompletableFuture<List<NearbyAttractionDTO>> getFiveNearestByAttractionsAsync(VisitedLocation visitedLocation) {
+        return withRewardPoints(rewardsService.getNearestAttractions(visitedLocation.location, 5),
+                visitedLocation);
+    }
+
+    /**
+     * Variante groupée de {@link #getFiveNearestByAttractionsAsync(VisitedLocation)} pour
+     * plusieurs utilisateurs à la fois.
+     *
+     * <p>Les noms en double ne sont traités qu'une fois. Les utilisateurs sans localisation
+     * connue sont suivis par des demandes regroupées, comme dans
+     * {@link #trackUserLocationsBatch(Collection)}, chacun n'attendant que la sienne : l'échec
+     * du suivi d'un utilisateur n'affecte pas les autres. Tous les
+     * utilisateurs partagent le même instantané de la table des attractions les plus proches, la recherche
+     * n'étant faite qu'une fois par localisation distincte ; les recherches de points de
+     * récompense sont lancées simultanément, les recherches identiques étant regroupées par
+     * le cache des points.</p>
+     *
+     * @param userNames les noms des utilisateurs
+     * @return pour chaque nom distinct, dans l'ordre reçu, ses cinq attractions les plus
+     *         proches à terme ; en échec avec {@link IllegalArgumentException} si l'utilisateur
+     *         est inconnu
+     */
+    public Map<String, CompletableFuture<List<NearbyAttractionDTO>>> getFiveNearestByAttractionsForUsers(
+            Collection<String> userNames) {
+        Map<String, User> users = resolveUsers(userNames);
+        NearestAttractionTable nearest = rewardsService.getNearestAttractionTable();
+        // Location ne redéfinit pas equals : les localisations identiques sont repérées par leurs coordonnées
+        Map<Coordinates, List<Attraction>> nearestByLocation = new ConcurrentHashMap<>();
+        Map<String, CompletableFuture<List<NearbyAttractionDTO>>> results = new LinkedHashMap<>();
+        users.forEach((userName, user) -> {
+            if (user == null) {
+                results.put(userName, CompletableFuture.failedFuture(unknownUser(userName)));
+                return;
+            }
+            CompletableFuture<VisitedLocation> location = user.getVisitedLocationCount() > 0
+                    ? CompletableFuture.completedFuture(user.getLastVisitedLocation())
+                    : requestUserLocation(user);
+            results.put(userName, location.thenCompose(visitedLocation -> withRewardPoints(
+                    nearestByLocation.computeIfAbsent(
+                            new Coordinates(visitedLocation.location.latitude, visitedLocation.location.longitude),
+                            c -> nearest.findNearest(visitedLocation.location, 5)),
+                    visitedLocation)));
+        });
+        return results;
+    }
+
+    /**
+     * Retourne les récompenses de plusieurs utilisateurs à la fois.
+     *
+     * @param userNames les noms des utilisateurs
+     * @return pour chaque nom distinct, dans l'ordre reçu, ses récompenses, ou {@code null}
+     *         si l'utilisateur est inconnu
+     */
+    public Map<String, List<UserReward>> getUserRewardsForUsers(Collection<String> userNames) {
+        Map<String, List<UserReward>> rewards = new LinkedHashMap<>();
+        resolveUsers(userNames).forEach((userName, user) ->
+                rewards.put(userName, user == null ? null : getUserRewards(user)));
+        return rewards;
+    }
+
+    private Map<String, User> resolveUsers(Collection<String> userNames) {
+        Map<String, User> users = new LinkedHashMap<>();
+        for (String userName : userNames) {
+            if (!users.containsKey(userName)) {
+                users.put(userName, getUser(userName));
+            }
+        }
+        return users;
+    }
+
+    private record Coordinates(double latitude, double longitude) {
+    }
+
+    private static IllegalArgumentException unknownUser(String userName) {
+        return new IllegalArgumentException("Unknown user: " + userName);
+    }
+
+    /**
+     * Associe à chaque attraction ses points de récompense pour l'utilisateur, les recherches
+     * étant lancées simultanément.
+     */
+    private CompletableFuture<List<NearbyAttractionDTO>> withRewardPoints(List<Attraction> nearest,
+                                                                          VisitedLocation visitedLocation) {
+        List<CompletableFuture<NearbyAttractionDTO>> attractions = nearest.stream()
+                .map(a -> rewardsService.getRewardPointsForUserAsync(a, visitedLocation.userId, requestExecutor)
+                        .thenApply(points -> createNearbyAttractionDTO(a, visitedLocation, points)))
+                .toList();
+
+        return CompletableFuture.allOf(attractions.toArray(new CompletableFuture[0]))
+                .thenApply(v -> attractions.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
     /**
      * Crée un objet {@link NearbyAttractionDTO} pour une attraction donnée et une localisation d'utilisateur.
      *
      * @param attraction l'attraction concernée
      * @param visitedLocation la localisation de l'utilisateur
+     * @param rewardPoints les points de récompense de l'attraction pour l'utilisateur
      * @return un {@link NearbyAttractionDTO} avec les informations de distance et de récompense
      */
-    private NearbyAttractionDTO createNearbyAttractionDTO(Attraction attraction, VisitedLocation visitedLocation) {
+    private NearbyAttractionDTO createNearbyAttractionDTO(Attraction attraction, VisitedLocation visitedLocation, int rewardPoints) {
         return new NearbyAttractionDTO(
                 attraction.attractionName,
                 attraction.latitude,
@@ -157,68 +538,142 @@ public class TourGuideService {
                 visitedLocation.location.latitude,
                 visitedLocation.location.longitude,
                 rewardsService.getDistance(attraction, visitedLocation.location),
-                rewardsService.getRewardPointsForUser(attraction, visitedLocation.userId)
+                rewardPoints
         );
     }
 
     @SuppressWarnings("unused")
     public List<Attraction> getNearByAttractions(VisitedLocation visitedLocation) {
-        List<Attraction> nearbyAttractions = new ArrayList<>();
-        for (Attraction attraction : gpsUtil.getAttractions()) {
-            if (rewardsService.isWithinAttractionProximity(attraction, visitedLocation.location)) {
-                nearbyAttractions.add(attraction);
-            }
-        }
-
-        return nearbyAttractions;
+        return rewardsService.getAttractionsWithinProximity(visitedLocation.location);
     }
 
 	private void addShutDownHook() {
 		Runtime.getRuntime().addShutdownHook(new Thread(tracker::stopTracking));
 	}
 
+	/**
+	 * Arrête le suivi à la fermeture du contexte Spring, avant l'arrêt des pools de threads.
+	 * Les appels en cours à GpsUtil et TripPricer sont abandonnés.
+	 */
+	@PreDestroy
+	public void stopTracking() {
+		tracker.stopTracking();
+		locationBatcher.close();
+		if (rewardEventBus != null) {
+			rewardEventBus.close();
+		}
+		if (tripDealsRefresher != null) {
+			tripDealsRefresher.shutdownNow();
+		}
+		gpsGuard.close();
+		tripDealsCache.close();
+	}
+
 	/**********************************************************************************
 	 * Methods Below: For Internal Testing
 	 *
 	 **********************************************************************************/
 	private static final String tripPricerApiKey = "test-server-api-key";
-	// Database connection will be used for external users, but for testing purposes
-	// internal users are provided and stored in memory
-	private final Map<String, User> internalUserMap = new HashMap<>();
+	// internal users are added to the configured user repository for testing purposes
+
+	/**
+	 * Charge les utilisateurs internes : avant la fin du constructeur en mode {@code EAGER},
+	 * sur un thread dédié en mode {@code BACKGROUND}, le service n'étant alors prêt qu'à la
+	 * fin du chargement.
+	 */
+	private CompletableFuture<Void> bootstrapUsers(TourGuideProperties.Users users) {
+		if (users.getBootstrap() == TourGuideProperties.BootstrapMode.EAGER) {
+			logger.debug("Initializing users");
+			initializeInternalUsers(users.getLocationRetention(), users.getBootstrapChunkSize());
+			logger.debug("Finished initializing users");
+			return CompletableFuture.completedFuture(null);
+		}
+		CompletableFuture<Void> ready = new CompletableFuture<>();
+		Thread bootstrap = new Thread(() -> {
+			try {
+				logger.debug("Initializing users in background");
+				initializeInternalUsers(users.getLocationRetention(), users.getBootstrapChunkSize());
+				logger.info("Finished initializing users, service is ready");
+				ready.complete(null);
+			} catch (Throwable e) {
+				logger.error("User initialization failed", e);
+				ready.completeExceptionally(e);
+			}
+		}, "user-bootstrap");
+		bootstrap.setDaemon(true);
+		bootstrap.start();
+		return ready;
+	}
 
-	private void initializeInternalUsers() {
-		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
+	/**
+	 * Génère les utilisateurs internes par paquets, en parallèle sur le pool dédié au suivi,
+	 * puis les ajoute au dépôt dans l'ordre de leur numéro.
+	 */
+	private void initializeInternalUsers(int locationRetention, int chunkSize) {
+		int userNumber = InternalTestHelper.getInternalUserNumber();
+		StopWatch stopWatch = StopWatch.createStarted();
+		// même instant de référence pour toutes les dates générées
+		Instant now = LocalDateTime.now().toInstant(ZoneOffset.UTC);
+		List<CompletableFuture<User[]>> chunks = new ArrayList<>();
+		for (int from = 0; from < userNumber; from += chunkSize) {
+			int start = from;
+			int end = Math.min(userNumber, from + chunkSize);
+			chunks.add(CompletableFuture.supplyAsync(() -> createInternalUsers(start, end, locationRetention, now),
+					executor));
+		}
+		for (CompletableFuture<User[]> chunk : chunks) {
+			for (User user : chunk.join()) {
+				userRepository.add(user);
+			}
+		}
+		stopWatch.stop();
+        logger.debug("Created {} internal test users in {} ms.", userNumber, stopWatch.getTime());
+	}
+
+	private User[] createInternalUsers(int from, int to, int locationRetention, Instant now) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		User[] users = new User[to - from];
+		for (int i = from; i < to; i++) {
 			String userName = "internalUser" + i;
 			String phone = "000";
 			String email = userName + "@tourGuide.com";
-			User user = new User(UUID.randomUUID(), userName, phone, email);
-			generateUserLocationHistory(user);
+			User user = new User(randomUserId(random), userName, phone, email, locationRetention);
+			generateUserLocationHistory(user, random, now);
+			users[i - from] = user;
+		}
+		return users;
+	}
 
-			internalUserMap.put(userName, user);
-		});
-        logger.debug("Created {} internal test users.", InternalTestHelper.getInternalUserNumber());
+	/**
+	 * Identifiant aléatoire de version 4, tiré sans passer par le générateur sécurisé (et
+	 * synchronisé) de {@link UUID#randomUUID()} : ces utilisateurs ne servent qu'aux tests.
+	 */
+	private static UUID randomUserId(ThreadLocalRandom random) {
+		long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long leastSigBits = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+		return new UUID(mostSigBits, leastSigBits);
 	}
 
-	private void generateUserLocationHistory(User user) {
+	private void generateUserLocationHistory(User user, ThreadLocalRandom random, Instant now) {
 		IntStream.range(0, 3).forEach(i -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
-                new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime())));
+                new Location(generateRandomLatitude(random), generateRandomLongitude(random)),
+                getRandomTime(random, now))));
 	}
 
-	private double generateRandomLongitude() {
+	private double generateRandomLongitude(ThreadLocalRandom random) {
 		double leftLimit = -180;
 		double rightLimit = 180;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+		return leftLimit + random.nextDouble() * (rightLimit - leftLimit);
 	}
 
-	private double generateRandomLatitude() {
+	private double generateRandomLatitude(ThreadLocalRandom random) {
 		double leftLimit = -85.05112878;
 		double rightLimit = 85.05112878;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+		return leftLimit + random.nextDouble() * (rightLimit - leftLimit);
 	}
 
-	private Date getRandomTime() {
-		LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-		return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+	private Date getRandomTime(ThreadLocalRandom random, Instant now) {
+		return Date.from(now.minus(random.nextInt(30), ChronoUnit.DAYS));
 	}
 
 }
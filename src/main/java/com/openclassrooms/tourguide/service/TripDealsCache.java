@@ -0,0 +1,165 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.pipeline.BatchPipeline;
+import com.openclassrooms.tourguide.pipeline.BatchReport;
+import com.openclassrooms.tourguide.resilience.UpstreamGuard;
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * Cache des offres de voyage renvoyées par {@link TripPricer}, une entrée par utilisateur
+ * et profil de préférences (adultes, enfants, durée, total des points de récompense).
+ *
+ * <p>Lorsque le profil d'un utilisateur change, l'entrée de son ancien profil est invalidée.
+ * Une entrée non consultée pendant la fenêtre d'activité est retirée ; son actualisation
+ * par {@link #refresh(BatchPipeline)} ne prolonge pas sa durée de vie, de sorte que seuls
+ * les utilisateurs actifs sont actualisés. Les appels simultanés pour un même profil absent
+ * sont regroupés en un seul appel à TripPricer.</p>
+ *
+ * <p>Les appels à TripPricer passent par un {@link UpstreamGuard}. Un appel refusé ou en
+ * échec n'est pas conservé.</p>
+ */
+public class TripDealsCache implements AutoCloseable {
+
+    private final TripPricer tripPricer;
+    private final UpstreamGuard guard;
+    private final String apiKey;
+    private final AsyncCache<Key, List<Provider>> cache;
+    private final Timer tripPricerTimer = TourGuideMetrics.timer(TourGuideMetrics.TRIP_PRICER_PRICE,
+            "Durée des appels à TripPricer.getPrice");
+    // profil courant de chaque utilisateur présent dans le cache
+    private final Map<UUID, Key> currentKeys = new ConcurrentHashMap<>();
+
+    public TripDealsCache(TripPricer tripPricer, String apiKey, TourGuideProperties.TripDeals properties) {
+        this(tripPricer, apiKey, properties,
+                new UpstreamGuard("tripPricer", new TourGuideProperties().getResilience().getTripPricer()));
+    }
+
+    public TripDealsCache(TripPricer tripPricer, String apiKey, TourGuideProperties.TripDeals properties,
+                          UpstreamGuard guard) {
+        this.tripPricer = tripPricer;
+        this.guard = guard;
+        this.apiKey = apiKey;
+        long activeWindowNanos = properties.getActiveWindow().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<Key, List<Provider>>() {
+                    @Override
+                    public long expireAfterCreate(Key key, List<Provider> deals, long currentTime) {
+                        return activeWindowNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, List<Provider> deals, long currentTime,
+                                                  long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, List<Provider> deals, long currentTime,
+                                                long currentDuration) {
+                        return activeWindowNanos;
+                    }
+                })
+                .removalListener((Key key, List<Provider> deals, RemovalCause cause) -> {
+                    // une actualisation remplace la valeur sans retirer le profil courant
+                    if (key != null && cause != RemovalCause.REPLACED) {
+                        currentKeys.remove(key.userId(), key);
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(TourGuideMetrics.registry(), cache, "tripDeals");
+    }
+
+    /**
+     * Retourne les offres correspondant au profil, depuis le cache si possible, sinon en
+     * interrogeant TripPricer.
+     *
+     * @param key utilisateur et profil de préférences
+     * @return les offres, identiques d'un appel à l'autre tant que le profil ne change pas
+     */
+    public List<Provider> getTripDeals(Key key) {
+        Key previous = currentKeys.put(key.userId(), key);
+        if (previous != null && !previous.equals(key)) {
+            cache.synchronous().invalidate(previous);
+        }
+        CompletableFuture<List<Provider>> loading = new CompletableFuture<>();
+        CompletableFuture<List<Provider>> deals = cache.get(key, (k, executor) -> loading);
+        if (deals == loading) {
+            try {
+                loading.complete(quote(key));
+            } catch (Throwable e) {
+                loading.completeExceptionally(e);
+            }
+        }
+        try {
+            return deals.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Actualise les offres de tous les profils en cache, sans prolonger leur durée de vie.
+     *
+     * @param pipeline traitement par lots exécutant les appels à TripPricer
+     * @return le bilan de l'actualisation
+     */
+    public BatchReport<Key> refresh(BatchPipeline pipeline) {
+        List<Key> keys = List.copyOf(cache.asMap().keySet());
+        return pipeline.run(keys.iterator(), key -> {
+            // lecture sans effet sur la durée de vie de l'entrée
+            if (cache.synchronous().policy().getIfPresentQuietly(key) != null) {
+                cache.asMap().replace(key, CompletableFuture.completedFuture(quote(key)));
+            }
+        });
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public long estimatedSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    /**
+     * Ferme la protection des appels, dont le cache est propriétaire.
+     */
+    @Override
+    public void close() {
+        guard.close();
+    }
+
+    private List<Provider> quote(Key key) {
+        return List.copyOf(tripPricerTimer.record(() -> guard.call(() -> tripPricer.getPrice(apiKey, key.userId(),
+                key.adults(), key.children(), key.duration(), key.rewardPoints()))));
+    }
+
+    /**
+     * Utilisateur et profil de préférences déterminant ses offres.
+     */
+    public record Key(UUID userId, int adults, int children, int duration, int rewardPoints) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * Distribution de latence décrite par quelques percentiles, par exemple
+ * {@code p50=20ms, p99=200ms, p999=1s, max=2s}.
+ *
+ * <p>Un tirage choisit un rang uniforme entre 0 et 1 et interpole linéairement entre les
+ * deux percentiles qui l'encadrent (0 pour le rang 0) ; au-delà du dernier percentile, la
+ * latence est celle du dernier. Les clés sont {@code p} suivi des décimales du rang
+ * ({@code p50} : 0,50 ; {@code p05} : 0,05 ; {@code p999} : 0,999) ou {@code max}.</p>
+ */
+public final class LatencyDistribution {
+    public static final LatencyDistribution NONE = new LatencyDistribution(new double[0], new long[0]);
+
+    private final double[] quantiles;
+    private final long[] nanos;
+
+    private LatencyDistribution(double[] quantiles, long[] nanos) {
+        this.quantiles = quantiles;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @param percentiles latence par percentile ; vide pour une latence nulle
+     * @throws IllegalArgumentException si une clé est invalide ou si les latences ne
+     *                                  croissent pas avec le rang
+     */
+    public static LatencyDistribution of(Map<String, Duration> percentiles) {
+        TreeMap<Double, Duration> sorted = new TreeMap<>();
+        percentiles.forEach((key, latency) -> sorted.put(quantileOf(key), latency));
+        double[] quantiles = new double[sorted.size()];
+        long[] nanos = new long[sorted.size()];
+        int i = 0;
+        for (Map.Entry<Double, Duration> entry : sorted.entrySet()) {
+            quantiles[i] = entry.getKey();
+            nanos[i] = entry.getValue().toNanos();
+            if (nanos[i] < 0 || (i > 0 && nanos[i] < nanos[i - 1])) {
+                throw new IllegalArgumentException("Latencies must not decrease with the percentile: " + percentiles);
+            }
+            i++;
+        }
+        return new LatencyDistribution(quantiles, nanos);
+    }
+
+    /**
+     * Tire une latence, en nanosecondes.
+     */
+    public long sampleNanos(RandomGenerator random) {
+        if (quantiles.length == 0) {
+            return 0;
+        }
+        double rank = random.nextDouble();
+        double lowerQuantile = 0;
+        long lowerNanos = 0;
+        for (int i = 0; i < quantiles.length; i++) {
+            if (rank <= quantiles[i]) {
+                double ratio = (rank - lowerQuantile) / (quantiles[i] - lowerQuantile);
+                return lowerNanos + (long) (ratio * (nanos[i] - lowerNanos));
+            }
+            lowerQuantile = quantiles[i];
+            lowerNanos = nanos[i];
+        }
+        return lowerNanos;
+    }
+
+    private static double quantileOf(String key) {
+        if (key.equals("max")) {
+            return 1;
+        }
+        if (key.length() < 2 || key.charAt(0) != 'p' || !key.substring(1).chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("Invalid percentile key (expected p50, p99, p999 or max): " + key);
+        }
+        return Double.parseDouble("0." + key.substring(1));
+    }
+}
@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * {@link GpsUtil} simulé : localisations aléatoires et catalogue d'attractions fixe, servis
+ * avec le comportement de l'{@link UpstreamSimulation} au lieu des attentes de la bibliothèque.
+ */
+public class SimulatedGpsUtil extends GpsUtil {
+    private final UpstreamSimulation simulation;
+    private final List<Attraction> attractions;
+
+    /**
+     * @param simulation comportement des appels
+     * @param attractions catalogue renvoyé à chaque appel, avec des identifiants stables
+     */
+    public SimulatedGpsUtil(UpstreamSimulation simulation, List<Attraction> attractions) {
+        this.simulation = simulation;
+        this.attractions = List.copyOf(attractions);
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        return simulation.call(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Location location = new Location(random.nextDouble(-85.05112878, 85.05112878), random.nextDouble(-180, 180));
+            return new VisitedLocation(userId, location, new Date());
+        });
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return simulation.call(() -> attractions);
+    }
+
+    public UpstreamSimulation getSimulation() {
+        return simulation;
+    }
+}
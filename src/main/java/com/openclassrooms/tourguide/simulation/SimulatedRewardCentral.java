@@ -0,0 +1,27 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * {@link RewardCentral} simulé : points aléatoires, servis avec le comportement de
+ * l'{@link UpstreamSimulation} au lieu des attentes de la bibliothèque.
+ */
+public class SimulatedRewardCentral extends RewardCentral {
+    private final UpstreamSimulation simulation;
+
+    public SimulatedRewardCentral(UpstreamSimulation simulation) {
+        this.simulation = simulation;
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        return simulation.call(() -> ThreadLocalRandom.current().nextInt(1, 1000));
+    }
+
+    public UpstreamSimulation getSimulation() {
+        return simulation;
+    }
+}
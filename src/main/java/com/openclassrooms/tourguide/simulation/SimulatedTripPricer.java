@@ -0,0 +1,52 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * {@link TripPricer} simulé : cinq offres de prestataires distincts dont le prix dépend de la
+ * composition du voyage et des points de récompense, servies avec le comportement de
+ * l'{@link UpstreamSimulation} au lieu des attentes de la bibliothèque.
+ */
+public class SimulatedTripPricer extends TripPricer {
+    private static final int OFFER_COUNT = 5;
+    private static final List<String> PROVIDERS = List.of("Holiday Travels", "Enterprize Ventures Limited",
+            "Sunny Days", "FlyAway Trips", "United Partners Vacations", "Dream Trips", "Live Free",
+            "Dancing Waves Cruselines and Partners", "AdventureCo", "Cure-Your-Blues");
+
+    private final UpstreamSimulation simulation;
+
+    public SimulatedTripPricer(UpstreamSimulation simulation) {
+        this.simulation = simulation;
+    }
+
+    @Override
+    public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+            int rewardsPoints) {
+        return simulation.call(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(PROVIDERS.size());
+            List<Provider> providers = new ArrayList<>(OFFER_COUNT);
+            for (int i = 0; i < OFFER_COUNT; i++) {
+                double price = Math.max(0, (random.nextInt(100, 700) * adults + random.nextInt(50, 350) * children)
+                        * nightsStay + 0.99 - rewardsPoints);
+                providers.add(new Provider(attractionId, PROVIDERS.get((first + i) % PROVIDERS.size()), price));
+            }
+            return providers;
+        });
+    }
+
+    @Override
+    public String getProviderName(String apiKey, int adults) {
+        return PROVIDERS.get(ThreadLocalRandom.current().nextInt(PROVIDERS.size()));
+    }
+
+    public UpstreamSimulation getSimulation() {
+        return simulation;
+    }
+}
@@ -0,0 +1,11 @@
+package com.openclassrooms.tourguide.simulation;
+
+/**
+ * Échec simulé d'un service distant : erreur tirée au hasard ou limitation de débit.
+ */
+public class SimulatedUpstreamException extends RuntimeException {
+
+    public SimulatedUpstreamException(String message) {
+        super(message);
+    }
+}
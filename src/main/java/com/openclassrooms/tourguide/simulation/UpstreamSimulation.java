@@ -0,0 +1,116 @@
+package com.openclassrooms.tourguide.simulation;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.openclassrooms.tourguide.TourGuideProperties;
+
+/**
+ * Comportement d'un service distant simulé : latence tirée d'une {@link LatencyDistribution},
+ * proportion d'appels en échec et limitation du nombre d'appels par seconde.
+ *
+ * <p>Un appel au-delà de la limite est rejeté immédiatement, comme le ferait un service
+ * renvoyant une erreur 429, sans subir de latence. La limite est comptée par fenêtre d'une
+ * seconde. Un appel en échec subit la latence avant d'échouer.</p>
+ */
+public class UpstreamSimulation {
+    private final String name;
+    private final LatencyDistribution latency;
+    private final double failureRate;
+    private final int maxCallsPerSecond;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    // seconde courante (32 bits de poids fort) et appels acceptés dans cette seconde (32 bits de poids faible)
+    private final AtomicLong window = new AtomicLong();
+
+    public UpstreamSimulation(String name, TourGuideProperties.Upstream properties) {
+        this(name, LatencyDistribution.of(properties.getLatency()), properties.getFailureRate(),
+                properties.getMaxCallsPerSecond());
+    }
+
+    /**
+     * @param name nom du service, repris dans les messages d'erreur
+     * @param latency latence de chaque appel
+     * @param failureRate proportion d'appels en échec, entre 0 et 1
+     * @param maxCallsPerSecond appels acceptés par seconde ; 0 pour ne pas limiter
+     */
+    public UpstreamSimulation(String name, LatencyDistribution latency, double failureRate, int maxCallsPerSecond) {
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("failureRate must be between 0 and 1: " + failureRate);
+        }
+        if (maxCallsPerSecond < 0) {
+            throw new IllegalArgumentException("maxCallsPerSecond must not be negative: " + maxCallsPerSecond);
+        }
+        this.name = name;
+        this.latency = latency;
+        this.failureRate = failureRate;
+        this.maxCallsPerSecond = maxCallsPerSecond;
+    }
+
+    /**
+     * Exécute un appel simulé.
+     *
+     * @param response réponse du service en cas de succès
+     * @return la réponse, après la latence tirée
+     * @throws SimulatedUpstreamException si l'appel est limité ou tiré en échec
+     */
+    public <T> T call(Supplier<T> response) {
+        calls.incrementAndGet();
+        if (!acquire()) {
+            throttled.incrementAndGet();
+            throw new SimulatedUpstreamException(name + " throttled: more than " + maxCallsPerSecond + " calls per second");
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long nanos = latency.sampleNanos(random);
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SimulatedUpstreamException(name + " call interrupted");
+            }
+        }
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            failures.incrementAndGet();
+            throw new SimulatedUpstreamException(name + " failed");
+        }
+        return response.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    private boolean acquire() {
+        if (maxCallsPerSecond == 0) {
+            return true;
+        }
+        long second = (System.nanoTime() / 1_000_000_000L) & 0xffff_ffffL;
+        while (true) {
+            long current = window.get();
+            long currentSecond = current >>> 32;
+            long accepted = currentSecond == second ? current & 0xffff_ffffL : 0;
+            if (accepted >= maxCallsPerSecond) {
+                return false;
+            }
+            if (window.compareAndSet(current, (second << 32) | (accepted + 1))) {
+                return true;
+            }
+        }
+    }
+}
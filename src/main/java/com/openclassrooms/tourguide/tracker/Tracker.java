@@ -1,28 +1,78 @@
 package com.openclassrooms.tourguide.tracker;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openclassrooms.tourguide.TourGuideProperties;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 
-public class Tracker extends Thread {
+/**
+ * Suivi périodique de la localisation de tous les utilisateurs de l'instance
+ * ({@link TourGuideService#getTrackedUsers()}).
+ *
+ * <p>Les cycles sont planifiés à fréquence fixe : la période ne dérive pas avec la durée du
+ * suivi. Chaque cycle traite les utilisateurs par paquets via le traitement parallèle de
+ * {@link TourGuideService#trackUsersLocationsParallel(List)}, ou via les demandes regroupées
+ * de {@link TourGuideService#trackUserLocationsBatch} si {@code tourguide.tracker.batched}
+ * est activé. Le premier cycle attend la fin du chargement des utilisateurs. Si un cycle
+ * dépasse son intervalle, il s'arrête après le paquet en cours, le dépassement est signalé
+ * et le cycle suivant reprend là où le précédent s'est arrêté.</p>
+ */
+public class Tracker implements Runnable {
 	private final Logger logger = LoggerFactory.getLogger(Tracker.class);
-	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
-	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "tracker"));
 	private final TourGuideService tourGuideService;
-	private boolean stop = false;
+	private final long trackingPollingInterval;
+	private final int chunkSize;
+	private final boolean batched;
+	private volatile boolean stop = false;
+	// position, dans la liste des utilisateurs, du prochain utilisateur à suivre
+	private int nextUserIndex = 0;
+	private final AtomicLong overrunCount = new AtomicLong();
+	private final AtomicLong cycleCount = new AtomicLong();
+	private final Timer cycleTimer = TourGuideMetrics.timer(TourGuideMetrics.TRACKER_CYCLE, "Durée d'un cycle de suivi");
+	private final Counter trackedUsers = TourGuideMetrics.counter(TourGuideMetrics.TRACKER_USERS, "Utilisateurs suivis");
+	// utilisateurs suivis par seconde lors du dernier cycle
+	private volatile double lastThroughput;
 
 	public Tracker(TourGuideService tourGuideService) {
+		this(tourGuideService, new TourGuideProperties.Tracker());
+	}
+
+	public Tracker(TourGuideService tourGuideService, TourGuideProperties.Tracker properties) {
 		this.tourGuideService = tourGuideService;
+		this.trackingPollingInterval = properties.getInterval().toMillis();
+		this.chunkSize = properties.getChunkSize();
+		this.batched = properties.isBatched();
+		TourGuideMetrics.gauge(TourGuideMetrics.TRACKER_THROUGHPUT, "Utilisateurs suivis par seconde lors du dernier cycle",
+				this, Tracker::getLastThroughput);
+
+		// aucun cycle avant la fin du chargement des utilisateurs
+		tourGuideService.whenReady().thenRun(this::start);
+	}
 
-		executorService.submit(this);
+	private void start() {
+		if (stop) {
+			return;
+		}
+		try {
+			executorService.scheduleAtFixedRate(this, 0, trackingPollingInterval, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.debug("Tracker stopped before users were loaded");
+		}
 	}
 
 	/**
@@ -33,29 +83,93 @@ public class Tracker extends Thread {
 		executorService.shutdownNow();
 	}
 
+	/**
+	 * Nombre de cycles ayant dépassé l'intervalle de suivi depuis le démarrage.
+	 */
+	public long getOverrunCount() {
+		return overrunCount.get();
+	}
+
+	/**
+	 * Nombre de cycles terminés depuis le démarrage.
+	 */
+	public long getCycleCount() {
+		return cycleCount.get();
+	}
+
+	/**
+	 * Utilisateurs suivis par seconde lors du dernier cycle terminé.
+	 */
+	public double getLastThroughput() {
+		return lastThroughput;
+	}
+
+	/**
+	 * Exécute un cycle de suivi. Une erreur est journalisée sans interrompre la planification
+	 * des cycles suivants.
+	 */
 	@Override
 	public void run() {
-		StopWatch stopWatch = new StopWatch();
-		while (true) {
-			if (Thread.currentThread().isInterrupted() || stop) {
-				logger.debug("Tracker stopping");
-				break;
-			}
+		if (Thread.currentThread().isInterrupted() || stop) {
+			logger.debug("Tracker stopping");
+			return;
+		}
+		try {
+			cycleTimer.record(this::trackCycle);
+		} catch (RuntimeException e) {
+			logger.error("Tracker cycle failed", e);
+		}
+	}
+
+	/**
+	 * Suit un paquet d'utilisateurs et retourne le nombre d'utilisateurs en échec. En mode
+	 * groupé, un paquet en échec est journalisé sans détail par utilisateur et compte pour
+	 * un échec.
+	 */
+	private int trackChunk(List<User> chunk) {
+		if (!batched) {
+			return tourGuideService.trackUsersLocationsParallel(chunk).failed();
+		}
+		try {
+			tourGuideService.trackUserLocationsBatch(chunk).join();
+			return 0;
+		} catch (CompletionException e) {
+			logger.warn("Batched tracking failed for at least one of {} users", chunk.size(), e.getCause());
+			return 1;
+		}
+	}
 
-			List<User> users = tourGuideService.getAllUsers();
-            logger.debug("Begin Tracker. Tracking {} users.", users.size());
-			stopWatch.start();
-			users.forEach(tourGuideService::trackUserLocation);
-			stopWatch.stop();
-            logger.debug("Tracker Time Elapsed: {} seconds.", TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
-			stopWatch.reset();
-			try {
-				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(trackingPollingInterval);
-			} catch (InterruptedException e) {
+	private void trackCycle() {
+		List<User> users = tourGuideService.getTrackedUsers();
+		logger.debug("Begin Tracker. Tracking {} users.", users.size());
+		StopWatch stopWatch = StopWatch.createStarted();
+		int tracked = 0;
+		int failed = 0;
+		int start = users.isEmpty() ? 0 : nextUserIndex % users.size();
+		while (tracked < users.size() && !stop && !Thread.currentThread().isInterrupted()) {
+			int from = (start + tracked) % users.size();
+			int to = Math.min(users.size(), from + Math.min(chunkSize, users.size() - tracked));
+			failed += trackChunk(users.subList(from, to));
+			tracked += to - from;
+			if (stopWatch.getTime() > trackingPollingInterval) {
 				break;
 			}
 		}
+		nextUserIndex = users.isEmpty() ? 0 : (start + tracked) % users.size();
+		stopWatch.stop();
+		trackedUsers.increment(tracked);
+		lastThroughput = tracked * 1000.0 / Math.max(1, stopWatch.getTime());
 
+		logger.debug("Tracker Time Elapsed: {} seconds, {} failures.",
+				TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()), failed);
+		if (stopWatch.getTime() > trackingPollingInterval) {
+			overrunCount.incrementAndGet();
+			logger.warn("Tracker cycle overran its {} seconds interval ({} seconds, {}/{} users tracked). "
+							+ "The next cycle starts immediately and resumes with the remaining users.",
+					TimeUnit.MILLISECONDS.toSeconds(trackingPollingInterval),
+					TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()), tracked, users.size());
+		}
+		cycleCount.incrementAndGet();
+		logger.debug("Tracker sleeping");
 	}
 }
@@ -0,0 +1,168 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.AbstractList;
+import java.util.Date;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Historique compact des localisations d'un utilisateur.
+ *
+ * <p>Chaque localisation occupe 24 octets (latitude, longitude et date en millisecondes)
+ * dans des tableaux primitifs regroupés en blocs de taille fixe. Un ajout écrit dans le
+ * bloc courant sans recopier l'historique ; un nouveau bloc n'est alloué que tous les
+ * {@value #CHUNK_SIZE} ajouts. Au-delà de la limite de rétention, les blocs les plus
+ * anciens sont abandonnés.</p>
+ *
+ * <p>Les ajouts sont sérialisés (en pratique un seul écrivain : le suivi de l'utilisateur),
+ * les lectures ne prennent aucun verrou : elles travaillent sur un instantané immuable,
+ * les cases d'un bloc n'étant jamais réécrites après publication.</p>
+ *
+ * <p>Les localisations sont numérotées par ordre d'ajout, à partir de 0 ; ce numéro ne
+ * change pas lorsque les plus anciennes sont abandonnées.</p>
+ */
+public class LocationHistory {
+    public static final int UNLIMITED_RETENTION = Integer.MAX_VALUE;
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int retention;
+    private volatile Chunks chunks = Chunks.empty();
+
+    public LocationHistory() {
+        this(UNLIMITED_RETENTION);
+    }
+
+    /**
+     * @param retention nombre maximal de localisations conservées
+     */
+    public LocationHistory(int retention) {
+        if (retention <= 0) {
+            throw new IllegalArgumentException("retention must be positive: " + retention);
+        }
+        this.retention = retention;
+    }
+
+    public synchronized void append(double latitude, double longitude, long epochMillis) {
+        Chunks current = chunks;
+        int sequence = current.count;
+        int chunkIndex = sequence >>> CHUNK_SHIFT;
+        if (chunkIndex - current.firstChunk >= current.chunks.length) {
+            int firstKeptChunk = Math.max(0, sequence + 1 - retention) >>> CHUNK_SHIFT;
+            current = current.append(firstKeptChunk);
+            chunks = current;
+        }
+        Chunk chunk = current.chunks[chunkIndex - current.firstChunk];
+        int slot = sequence & CHUNK_MASK;
+        chunk.latitudes[slot] = latitude;
+        chunk.longitudes[slot] = longitude;
+        chunk.times[slot] = epochMillis;
+        current.count = sequence + 1;
+    }
+
+    public synchronized void clear() {
+        chunks = Chunks.empty();
+    }
+
+    /**
+     * Nombre total de localisations ajoutées depuis la création (ou le dernier {@link #clear()}),
+     * y compris celles qui ne sont plus conservées.
+     */
+    public int getAppendedCount() {
+        return chunks.count;
+    }
+
+    /**
+     * Numéro de la plus ancienne localisation conservée.
+     */
+    public int getOldestSequence() {
+        return Math.max(0, chunks.count - retention);
+    }
+
+    /**
+     * Vue immuable des localisations conservées dont le numéro est supérieur ou égal à
+     * {@code fromSequence}, dans l'ordre d'ajout.
+     *
+     * @param userId identifiant de l'utilisateur, repris dans chaque {@link VisitedLocation}
+     * @param fromSequence numéro de la première localisation souhaitée
+     * @return les localisations, matérialisées à la lecture
+     */
+    public List<VisitedLocation> view(UUID userId, int fromSequence) {
+        // bornes et blocs lus dans le même instantané, qu'un clear() remplace d'un bloc
+        Chunks snapshot = chunks;
+        int end = snapshot.count;
+        int start = Math.max(fromSequence, Math.max(end - retention, snapshot.firstChunk << CHUNK_SHIFT));
+        return new View(userId, snapshot, start, Math.max(start, end));
+    }
+
+    private static final class Chunk {
+        private final double[] latitudes = new double[CHUNK_SIZE];
+        private final double[] longitudes = new double[CHUNK_SIZE];
+        private final long[] times = new long[CHUNK_SIZE];
+    }
+
+    /**
+     * Blocs conservés, le premier portant le numéro de bloc {@code firstChunk}, et nombre
+     * total de localisations ajoutées, écrit après les données qu'il publie.
+     */
+    private static final class Chunks {
+        private final Chunk[] chunks;
+        private final int firstChunk;
+        private volatile int count;
+
+        private Chunks(Chunk[] chunks, int firstChunk, int count) {
+            this.chunks = chunks;
+            this.firstChunk = firstChunk;
+            this.count = count;
+        }
+
+        private static Chunks empty() {
+            return new Chunks(new Chunk[0], 0, 0);
+        }
+
+        private Chunks append(int firstKeptChunk) {
+            int dropped = Math.max(0, Math.min(chunks.length, firstKeptChunk - firstChunk));
+            Chunk[] kept = new Chunk[chunks.length - dropped + 1];
+            System.arraycopy(chunks, dropped, kept, 0, chunks.length - dropped);
+            kept[kept.length - 1] = new Chunk();
+            return new Chunks(kept, chunks.length == 0 ? firstKeptChunk : firstChunk + dropped, count);
+        }
+    }
+
+    private static final class View extends AbstractList<VisitedLocation> implements RandomAccess {
+        private final UUID userId;
+        private final Chunks snapshot;
+        private final int start;
+        private final int end;
+
+        private View(UUID userId, Chunks snapshot, int start, int end) {
+            this.userId = userId;
+            this.snapshot = snapshot;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public VisitedLocation get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            int sequence = start + index;
+            Chunk chunk = snapshot.chunks[(sequence >>> CHUNK_SHIFT) - snapshot.firstChunk];
+            int slot = sequence & CHUNK_MASK;
+            return new VisitedLocation(userId, new Location(chunk.latitudes[slot], chunk.longitudes[slot]),
+                    new Date(chunk.times[slot]));
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+}
@@ -3,9 +3,14 @@ package com.openclassrooms.tourguide.user;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
+import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
 
@@ -15,15 +20,26 @@ public class User {
 	private String phoneNumber;
 	private String emailAddress;
 	private Date latestLocationTimestamp;
-	private final List<VisitedLocation> visitedLocations = new CopyOnWriteArrayList<>();
+	private final LocationHistory visitedLocations;
 	private final List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+	private final Set<UUID> rewardedAttractionIds = ConcurrentHashMap.newKeySet();
 	private UserPreferences userPreferences = new UserPreferences();
-	private List<Provider> tripDeals = new ArrayList<>();
+	private volatile List<Provider> tripDeals = new ArrayList<>();
+	// génération (32 bits de poids fort) et nombre de localisations déjà évaluées pour les récompenses
+	private final AtomicLong rewardsWatermark = new AtomicLong();
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
+		this(userId, userName, phoneNumber, emailAddress, LocationHistory.UNLIMITED_RETENTION);
+	}
+
+	/**
+	 * @param locationRetention nombre maximal de localisations conservées dans l'historique
+	 */
+	public User(UUID userId, String userName, String phoneNumber, String emailAddress, int locationRetention) {
 		this.userId = userId;
 		this.userName = userName;
 		this.phoneNumber = phoneNumber;
 		this.emailAddress = emailAddress;
+		this.visitedLocations = new LocationHistory(locationRetention);
 	}
 	
 	public UUID getUserId() {
@@ -65,25 +81,86 @@ public class User {
 	}
 	
 	public void addToVisitedLocations(VisitedLocation visitedLocation) {
-		visitedLocations.add(visitedLocation);
+		Objects.requireNonNull(visitedLocation, "visitedLocation");
+		visitedLocations.append(visitedLocation.location.latitude, visitedLocation.location.longitude,
+				visitedLocation.timeVisited.getTime());
 	}
-	
+
+	/**
+	 * Retourne une vue immuable des localisations conservées, dans l'ordre de visite.
+	 */
 	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+		return visitedLocations.view(userId, 0);
 	}
 
+    /**
+     * Nombre total de localisations enregistrées, y compris celles qui ne sont plus conservées.
+     */
+    public int getVisitedLocationCount() {
+        return visitedLocations.getAppendedCount();
+    }
+
+    /**
+     * Retourne une vue des localisations visitées à partir du numéro d'ordre donné.
+     *
+     * @param fromSequence numéro d'ordre (à partir de 0) de la première localisation à retourner
+     * @return les localisations conservées de numéro {@code fromSequence} et suivants, dans l'ordre de visite
+     */
+    public List<VisitedLocation> getVisitedLocationsSince(int fromSequence) {
+        return visitedLocations.view(userId, fromSequence);
+    }
+
     @SuppressWarnings("unused")
 	public void clearVisitedLocations() {
 		visitedLocations.clear();
+		rewardsWatermark.set(0);
 	}
+
+    /**
+     * Retourne le nombre de localisations déjà évaluées par le calcul des récompenses.
+     *
+     * @param generation génération courante des règles de récompense ; un marqueur posé
+     *                   avec une autre génération est ignoré
+     * @return le nombre de localisations évaluées, ou 0 si la génération a changé
+     */
+    public int getEvaluatedLocationCount(int generation) {
+        long watermark = rewardsWatermark.get();
+        return (int) (watermark >>> 32) == generation ? (int) watermark : 0;
+    }
+
+    /**
+     * Enregistre que les {@code count} premières localisations ont été évaluées pour la génération donnée.
+     * Le marqueur n'est jamais reculé au sein d'une même génération.
+     */
+    public void markLocationsEvaluated(int generation, int count) {
+        rewardsWatermark.updateAndGet(watermark -> (int) (watermark >>> 32) == generation && (int) watermark >= count
+                ? watermark
+                : ((long) generation << 32) | (count & 0xFFFFFFFFL));
+    }
 	
-	public void addUserReward(UserReward userReward) {
-        boolean alreadyRewarded = userRewards.stream()
-                .anyMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName));
-        if (!alreadyRewarded) {
+    /**
+     * Ajoute une récompense si l'utilisateur n'a pas déjà été récompensé pour cette attraction.
+     *
+     * <p>La réservation de l'attraction dans l'ensemble concurrent est atomique : si plusieurs
+     * threads tentent d'attribuer la même attraction, un seul ajoute la récompense.</p>
+     *
+     * @param userReward la récompense à ajouter
+     * @return {@code true} si la récompense a été ajoutée
+     */
+	public boolean addUserReward(UserReward userReward) {
+        if (rewardedAttractionIds.add(userReward.attraction.attractionId)) {
             userRewards.add(userReward);
+            return true;
         }
+        return false;
 	}
+
+    /**
+     * Indique si l'utilisateur a déjà été récompensé pour l'attraction, sans parcourir ses récompenses.
+     */
+    public boolean hasRewardFor(Attraction attraction) {
+        return rewardedAttractionIds.contains(attraction.attractionId);
+    }
 	
 	public List<UserReward> getUserRewards() {
 		return userRewards;
@@ -99,7 +176,8 @@ public class User {
 	}
 
 	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+		List<VisitedLocation> locations = visitedLocations.view(userId, visitedLocations.getAppendedCount() - 1);
+		return locations.get(locations.size() - 1);
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
@@ -0,0 +1,134 @@
+package com.openclassrooms.tourguide;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Générateur de charge en boucle ouverte contre {@code TourGuideController}.
+ *
+ * <p>Les requêtes partent au débit visé quel que soit le temps de réponse : une instance
+ * ralentie accumule des requêtes en cours au lieu de ralentir le générateur. La latence est
+ * mesurée depuis l'instant auquel la requête aurait dû partir, pour que l'attente due à un
+ * générateur en retard soit comptée (omission coordonnée). Chaque requête porte sur l'un des
+ * chemins fournis, pour un utilisateur interne tiré à tour de rôle.</p>
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.openclassrooms.tourguide.LoadGenerator \
+ *     -Dexec.args="http://localhost:8080 500 60 100000 /getNearbyAttractions /getRewards"
+ * </pre>
+ */
+public class LoadGenerator {
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String baseUrl;
+    private final int userCount;
+    private final List<String> paths;
+    private final Duration requestTimeout;
+
+    /**
+     * @param baseUrl adresse de l'instance, par exemple {@code http://localhost:8080}
+     * @param userCount nombre d'utilisateurs internes interrogés
+     * @param paths chemins interrogés à tour de rôle, par exemple {@code /getNearbyAttractions}
+     * @param requestTimeout délai au-delà duquel une requête est comptée en échec
+     */
+    public LoadGenerator(String baseUrl, int userCount, List<String> paths, Duration requestTimeout) {
+        if (userCount <= 0 || paths.isEmpty()) {
+            throw new IllegalArgumentException("userCount and paths must not be empty");
+        }
+        this.baseUrl = baseUrl;
+        this.userCount = userCount;
+        this.paths = List.copyOf(paths);
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Envoie des requêtes au débit visé pendant la durée donnée, puis attend les réponses.
+     *
+     * @param requestsPerSecond débit visé
+     * @param duration durée d'envoi
+     * @return latences et erreurs observées
+     */
+    public Report run(int requestsPerSecond, Duration duration) {
+        int total = (int) (duration.toNanos() * requestsPerSecond / 1_000_000_000L);
+        long interval = 1_000_000_000L / requestsPerSecond;
+        long[] latencies = new long[total];
+        AtomicLong failures = new AtomicLong();
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[total];
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long intended = start + i * interval;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int index = i;
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + paths.get(i % paths.size())
+                    + "?userName=internalUser" + (i % userCount))).timeout(requestTimeout).GET().build();
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - intended;
+                        if (error != null || response.statusCode() >= 400) {
+                            failures.incrementAndGet();
+                        }
+                    });
+        }
+        long sendingNanos = System.nanoTime() - start;
+        // les échecs sont déjà comptés : seule compte la fin de toutes les requêtes
+        CompletableFuture.allOf(responses).exceptionally(error -> null).join();
+        return Report.of(latencies, failures.get(), sendingNanos);
+    }
+
+    /**
+     * Résultat d'un tir : nombre de requêtes, débit effectivement envoyé et percentiles de latence.
+     */
+    public record Report(int requests, long failures, double achievedRequestsPerSecond, Duration p50, Duration p99,
+                         Duration p999, Duration max) {
+
+        static Report of(long[] latencies, long failures, long sendingNanos) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            double rate = sorted.length == 0 ? 0 : sorted.length * 1e9 / Math.max(1, sendingNanos);
+            return new Report(sorted.length, failures, rate, percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), percentile(sorted, 1));
+        }
+
+        private static Duration percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return Duration.ZERO;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return Duration.ofNanos(sorted[Math.max(0, index)]);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%.1f/s), %d failures, p50=%d ms, p99=%d ms, p999=%d ms, max=%d ms",
+                    requests, achievedRequestsPerSecond, failures, p50.toMillis(), p99.toMillis(), p999.toMillis(),
+                    max.toMillis());
+        }
+    }
+
+    /**
+     * Arguments : adresse, débit visé, durée en secondes, nombre d'utilisateurs, chemins.
+     */
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.err.println("Usage: LoadGenerator <baseUrl> <requestsPerSecond> <seconds> <userCount> <path>...");
+            System.exit(2);
+        }
+        LoadGenerator generator = new LoadGenerator(args[0], Integer.parseInt(args[3]),
+                Arrays.asList(args).subList(4, args.length), Duration.ofSeconds(30));
+        Report report = generator.run(Integer.parseInt(args[1]), Duration.ofSeconds(Long.parseLong(args[2])));
+        System.out.println(report);
+        // clients HTTP et leurs threads libérés avec la JVM
+        System.exit(report.failures() == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,116 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.GeoDistance;
+import com.openclassrooms.tourguide.attraction.NearestAttractionTable;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+public class TestAttractionIndex {
+
+	private final List<Attraction> attractions = new GpsUtil().getAttractions();
+
+	@Test
+	public void findWithinMilesMatchesFullScan() {
+		AttractionIndex index = new AttractionIndex(attractions);
+		Random random = new Random(42);
+
+		for (int i = 0; i < 500; i++) {
+			Location location = randomLocation(random);
+			double miles = random.nextInt(3000);
+
+			Set<Attraction> expected = new HashSet<>();
+			attractions.stream().filter(a -> !(GeoDistance.miles(a, location) > miles)).forEach(expected::add);
+
+			assertEquals(expected, new HashSet<>(index.findWithinMiles(location, miles)));
+		}
+	}
+
+	@Test
+	public void findWithinMilesAcrossDateLine() {
+		Attraction east = new Attraction("East", "city", "state", 0, 179.9);
+		Attraction west = new Attraction("West", "city", "state", 0, -179.9);
+		AttractionIndex index = new AttractionIndex(List.of(east, west), 7);
+
+		List<Attraction> result = index.findWithinMiles(new Location(0, 179.95), 20);
+
+		assertEquals(2, result.size());
+	}
+
+	@Test
+	public void findNearestMatchesFullSort() {
+		AttractionIndex index = new AttractionIndex(attractions);
+		Random random = new Random(7);
+
+		for (int i = 0; i < 500; i++) {
+			Location location = randomLocation(random);
+
+			List<Attraction> expected = attractions.stream()
+					.sorted(Comparator.comparingDouble(a -> GeoDistance.miles(a, location)))
+					.limit(5)
+					.toList();
+
+			assertEquals(expected, index.findNearest(location, 5));
+		}
+	}
+
+	@Test
+	public void findNearestReturnsWholeCatalogueWhenTooFewAttractions() {
+		AttractionIndex index = new AttractionIndex(attractions);
+
+		List<Attraction> nearest = index.findNearest(new Location(-45, 120), attractions.size() + 10);
+
+		assertEquals(attractions.size(), nearest.size());
+		assertTrue(index.findNearest(new Location(0, 0), 0).isEmpty());
+	}
+
+	@Test
+	public void nearestTableMatchesIndex() {
+		AttractionIndex index = new AttractionIndex(attractions);
+		NearestAttractionTable table = new NearestAttractionTable(index, 0.5, 10_000);
+		Random random = new Random(11);
+
+		for (int i = 0; i < 2_000; i++) {
+			// la moitié des requêtes autour d'une attraction, pour retomber dans des cellules déjà calculées
+			Location location = i % 2 == 0 ? randomLocation(random)
+					: near(attractions.get(random.nextInt(attractions.size())), random);
+			assertEquals(index.findNearest(location, 5), table.findNearest(location, 5));
+		}
+		assertEquals(index.findNearest(new Location(90, 0), 3), table.findNearest(new Location(90, 0), 3));
+		assertEquals(index.findNearest(new Location(-89.9, 180), 5), table.findNearest(new Location(-89.9, 180), 5));
+		assertTrue(table.getCellCount() < 2_000);
+	}
+
+	@Test
+	public void distanceIsAccurateAtShortRange() {
+		Location origin = new Location(45, 0);
+		Location close = new Location(45, 1e-6);
+		double expected = GeoDistance.MILES_PER_DEGREE * 1e-6 * Math.cos(Math.toRadians(45));
+
+		assertEquals(expected, GeoDistance.miles(origin, close), expected * 1e-6);
+		for (double miles : new double[] {0.01, 10, 200, 5000}) {
+			assertEquals(miles, GeoDistance.chordSquaredToMiles(GeoDistance.milesToChordSquared(miles)), miles * 1e-9);
+		}
+	}
+
+	private static Location near(Attraction attraction, Random random) {
+		return new Location(attraction.latitude + random.nextDouble() - 0.5, attraction.longitude + random.nextDouble() - 0.5);
+	}
+
+	private static Location randomLocation(Random random) {
+		return new Location(-85 + random.nextDouble() * 170, -180 + random.nextDouble() * 360);
+	}
+}
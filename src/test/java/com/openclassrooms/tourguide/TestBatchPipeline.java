@@ -0,0 +1,115 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.executor.TaskExecutors;
+import com.openclassrooms.tourguide.pipeline.BatchPipeline;
+import com.openclassrooms.tourguide.pipeline.BatchReport;
+
+public class TestBatchPipeline {
+
+	private final Executor executor = TaskExecutors.standalone("pipeline", new TourGuideProperties.Pool());
+
+	@Test
+	public void failedItemsAreRetriedAndReported() {
+		BatchPipeline pipeline = new BatchPipeline("test", executor, 10, 20, 3);
+		Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+		BatchReport<Integer> report = pipeline.run(IntStream.range(0, 100).boxed().iterator(), i -> {
+			int attempt = attempts.computeIfAbsent(i, k -> new AtomicInteger()).incrementAndGet();
+			// multiples de 10 : échec à chaque tentative ; multiples de 3 : échec à la première seulement
+			if (i % 10 == 0 || (i % 3 == 0 && attempt == 1)) {
+				throw new IllegalStateException("failure " + i);
+			}
+		});
+
+		assertEquals(100, report.submitted());
+		assertEquals(90, report.succeeded());
+		assertEquals(List.of(0, 10, 20, 30, 40, 50, 60, 70, 80, 90), report.failedItems().stream().sorted().toList());
+		assertEquals(3, report.failureCounts().get(30));
+		assertEquals(1, report.failureCounts().get(3));
+		// 10 éléments repris deux fois, 30 multiples de 3 non multiples de 10 repris une fois
+		assertEquals(50, report.retries());
+	}
+
+	@Test
+	public void sourceIsPulledWithBoundedInFlightTasks() {
+		int maxInFlight = 8;
+		BatchPipeline pipeline = new BatchPipeline("test", executor, 4, maxInFlight, 1);
+		AtomicInteger pulled = new AtomicInteger();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxObserved = new AtomicInteger();
+		Iterator<Integer> source = new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return pulled.get() < 2_000;
+			}
+
+			@Override
+			public Integer next() {
+				return pulled.incrementAndGet();
+			}
+		};
+
+		BatchReport<Integer> report = pipeline.run(source, i -> {
+			maxObserved.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+		});
+
+		assertEquals(2_000, report.succeeded());
+		assertTrue(maxObserved.get() <= maxInFlight, "max in flight: " + maxObserved.get());
+		assertTrue(report.failedItems().isEmpty());
+	}
+
+	@Test
+	public void bulkheadFailsTasksBeyondItsLimitWithoutRunningThemOnCaller() throws Exception {
+		TourGuideProperties.Pool pool = new TourGuideProperties.Pool();
+		pool.setMaxConcurrency(1);
+		Executor bulkhead = TaskExecutors.bulkhead("requests", pool);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Thread> busy = TaskExecutors.supplyAsync(() -> {
+			awaitUninterruptibly(release);
+			return Thread.currentThread();
+		}, bulkhead);
+
+		CompletableFuture<Thread> rejected = TaskExecutors.supplyAsync(Thread::currentThread, bulkhead);
+		assertTrue(rejected.isCompletedExceptionally());
+		ExecutionException failure = assertThrows(ExecutionException.class, rejected::get);
+		assertTrue(failure.getCause() instanceof RejectedExecutionException);
+
+		release.countDown();
+		assertTrue(busy.get(5, TimeUnit.SECONDS).isVirtual());
+		// place libérée à la fin de la tâche
+		assertTrue(TaskExecutors.supplyAsync(Thread::currentThread, bulkhead).get(5, TimeUnit.SECONDS).isVirtual());
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import com.openclassrooms.tourguide.cluster.BulkForwarder;
+import com.openclassrooms.tourguide.cluster.ClusterNode;
+import com.openclassrooms.tourguide.cluster.ConsistentHashRing;
+import com.openclassrooms.tourguide.cluster.FileMembership;
+import com.openclassrooms.tourguide.cluster.InMemoryMembership;
+import com.openclassrooms.tourguide.cluster.ShardRouter;
+
+public class TestCluster {
+
+	private static final ClusterNode A = new ClusterNode("a", "http://a:8080");
+	private static final ClusterNode B = new ClusterNode("b", "http://b:8080");
+	private static final ClusterNode C = new ClusterNode("c", "http://c:8080");
+	private static final ClusterNode D = new ClusterNode("d", "http://d:8080");
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void ringSpreadsUsersAndOnlyMovesThemToJoiningNode() {
+		List<String> userNames = IntStream.range(0, 30_000).mapToObj(i -> "internalUser" + i).toList();
+		ConsistentHashRing ring = new ConsistentHashRing(List.of(A, B, C), 128);
+		ConsistentHashRing grown = new ConsistentHashRing(List.of(C, D, B, A), 128);
+
+		Map<ClusterNode, Integer> counts = new HashMap<>();
+		int moved = 0;
+		for (String userName : userNames) {
+			ClusterNode before = ring.ownerOf(userName);
+			ClusterNode after = grown.ownerOf(userName);
+			counts.merge(before, 1, Integer::sum);
+			if (!before.equals(after)) {
+				assertEquals(D, after);
+				moved++;
+			}
+		}
+
+		counts.values().forEach(count -> assertTrue(count > 7_000 && count < 13_000, "unbalanced: " + counts));
+		assertTrue(moved > 5_000 && moved < 10_000, "moved: " + moved);
+	}
+
+	@Test
+	public void routersSharingMembershipPartitionUsers() {
+		InMemoryMembership membership = new InMemoryMembership();
+		ShardRouter a = new ShardRouter(A, membership, 64);
+		ShardRouter b = new ShardRouter(B, membership, 64);
+
+		List<String> userNames = IntStream.range(0, 1_000).mapToObj(i -> "internalUser" + i).toList();
+		long ownedByA = userNames.stream().filter(a::isLocal).count();
+		userNames.forEach(userName -> {
+			assertEquals(a.ownerOf(userName), b.ownerOf(userName));
+			assertNotEquals(a.isLocal(userName), b.isLocal(userName));
+		});
+		assertTrue(ownedByA > 0 && ownedByA < 1_000);
+
+		b.close();
+		assertTrue(userNames.stream().allMatch(a::isLocal));
+	}
+
+	@Test
+	public void fileMembershipTracksJoinLeaveAndStaleNodes() throws Exception {
+		try (FileMembership first = new FileMembership(directory, Duration.ofMinutes(1), Duration.ofMinutes(2));
+			 FileMembership second = new FileMembership(directory, Duration.ofMinutes(1), Duration.ofMinutes(2))) {
+			first.join(A);
+			second.join(B);
+			first.refresh();
+			assertEquals(Set.of(A, B), first.members());
+
+			// instance arrêtée brutalement : son fichier n'est plus réécrit
+			Files.writeString(directory.resolve("c.node"), C.url());
+			Files.setLastModifiedTime(directory.resolve("c.node"), FileTime.from(Instant.now().minusSeconds(600)));
+			second.leave(B);
+			first.refresh();
+			assertEquals(Set.of(A), first.members());
+		}
+		assertTrue(Files.notExists(directory.resolve("a.node")));
+	}
+
+	@Test
+	public void bulkRequestIsSplitByOwnerAndForwarded() throws Exception {
+		// instance B : renvoie une ligne par utilisateur reçu et note l'en-tête de transfert
+		ObjectMapper objectMapper = new ObjectMapper();
+		List<String> forwardedBy = new CopyOnWriteArrayList<>();
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/bulk/getRewards", exchange -> {
+			forwardedBy.add(exchange.getRequestHeaders().getFirst(BulkForwarder.FORWARDED_HEADER));
+			List<String> names = objectMapper.readValue(exchange.getRequestBody(), new TypeReference<List<String>>() { });
+			byte[] body = names.stream().map(name -> "{\"userName\":\"" + name + "\"}\n")
+					.collect(Collectors.joining()).getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+		try {
+			ClusterNode b = new ClusterNode("b", "http://localhost:" + server.getAddress().getPort());
+			InMemoryMembership membership = new InMemoryMembership();
+			ShardRouter routerA = new ShardRouter(A, membership, 64);
+			ShardRouter routerB = new ShardRouter(b, membership, 64);
+			BulkForwarder forwarderA = new BulkForwarder(routerA, objectMapper, Duration.ofSeconds(5));
+			BulkForwarder forwarderB = new BulkForwarder(routerB, objectMapper, Duration.ofSeconds(5));
+
+			List<String> userNames = IntStream.range(0, 50).mapToObj(i -> "internalUser" + i).toList();
+			BulkForwarder.Partition partition = forwarderA.partition(userNames, false);
+			List<String> ownedByB = userNames.stream().filter(routerB::isLocal).toList();
+			assertEquals(userNames.stream().filter(routerA::isLocal).toList(), partition.local());
+			assertEquals(Map.of(b, ownedByB), partition.remote());
+			assertTrue(partition.misrouted().isEmpty());
+
+			List<String> lines = forwarderA.forward(b, "/bulk/getRewards", ownedByB).get(5, TimeUnit.SECONDS);
+			assertEquals(ownedByB.size(), lines.size());
+			assertTrue(lines.get(0).contains(ownedByB.get(0)));
+			assertEquals(List.of("a"), forwardedBy);
+
+			// requête déjà transmise : B ne la renvoie pas, il signale les utilisateurs de A
+			BulkForwarder.Partition onB = forwarderB.partition(userNames, true);
+			assertEquals(ownedByB, onB.local());
+			assertTrue(onB.remote().isEmpty());
+			assertEquals(partition.local(), onB.misrouted());
+		} finally {
+			server.stop(0);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.openclassrooms.tourguide.history.MappedLocationStore;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+public class TestMappedLocationStore {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void historyIsRecoveredAfterReopening() throws Exception {
+		UUID first = UUID.randomUUID();
+		UUID second = UUID.randomUUID();
+
+		// 4 enregistrements par bloc, 3 blocs par fichier : plusieurs fichiers et blocs entrelacés
+		try (MappedLocationStore store = new MappedLocationStore(directory, 4, 3)) {
+			IntStream.range(0, 30).forEach(i -> {
+				store.append(visitedLocation(first, i));
+				if (i % 3 == 0) {
+					store.append(visitedLocation(second, i));
+				}
+			});
+		}
+
+		try (MappedLocationStore store = new MappedLocationStore(directory, 4, 3)) {
+			assertEquals(2, store.userCount());
+			assertEquals(30, store.count(first));
+			assertEquals(10, store.count(second));
+
+			List<VisitedLocation> history = store.read(first, 0);
+			IntStream.range(0, 30).forEach(i -> assertLocation(history.get(i), first, i));
+			assertLocation(store.read(second, 9).get(0), second, 27);
+
+			store.append(visitedLocation(second, 99));
+			assertEquals(11, store.count(second));
+			assertLocation(store.read(second, 10).get(0), second, 99);
+		}
+
+		try (MappedLocationStore store = new MappedLocationStore(directory, 4, 3)) {
+			assertEquals(11, store.count(second));
+			assertTrue(store.read(UUID.randomUUID(), 0).isEmpty());
+		}
+	}
+
+	@Test
+	public void reopeningWithAnotherLayoutFails() throws Exception {
+		try (MappedLocationStore store = new MappedLocationStore(directory, 4, 3)) {
+			store.append(visitedLocation(UUID.randomUUID(), 1));
+		}
+
+		assertThrows(IllegalStateException.class, () -> new MappedLocationStore(directory, 8, 3));
+	}
+
+	private static VisitedLocation visitedLocation(UUID userId, int i) {
+		return new VisitedLocation(userId, new Location(i / 2.0, -i / 4.0), new Date(1_000L * i));
+	}
+
+	private static void assertLocation(VisitedLocation location, UUID userId, int i) {
+		assertEquals(userId, location.userId);
+		assertEquals(i / 2.0, location.location.latitude);
+		assertEquals(-i / 4.0, location.location.longitude);
+		assertEquals(new Date(1_000L * i), location.timeVisited);
+	}
+}
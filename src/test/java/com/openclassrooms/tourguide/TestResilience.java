@@ -0,0 +1,234 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.executor.TaskExecutors;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.resilience.CircuitBreaker;
+import com.openclassrooms.tourguide.resilience.UpstreamGuard;
+import com.openclassrooms.tourguide.resilience.UpstreamUnavailableException;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestResilience {
+
+	@Test
+	public void circuitBreakerOpensOnFailuresAndClosesAfterSuccessfulProbe() throws InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(0.5, 10, 4, Duration.ofMillis(50));
+		for (int i = 0; i < 3; i++) {
+			assertTrue(breaker.tryAcquirePermission());
+			breaker.onFailure();
+		}
+		// moins de minimumCalls issues connues
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquirePermission());
+		breaker.onSuccess();
+		assertTrue(breaker.tryAcquirePermission());
+		breaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquirePermission());
+
+		TimeUnit.MILLISECONDS.sleep(60);
+		assertTrue(breaker.tryAcquirePermission());
+		// un seul appel d'essai à la fois
+		assertFalse(breaker.tryAcquirePermission());
+		breaker.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void guardAbandonsSlowCallsAndRejectsWhileTheyRun() {
+		TourGuideProperties.Guard properties = new TourGuideProperties.Guard(Duration.ofMillis(50));
+		properties.setMaxConcurrentCalls(1);
+		UpstreamGuard guard = new UpstreamGuard("slow", properties);
+
+		long start = System.nanoTime();
+		assertThrows(UpstreamUnavailableException.class, () -> guard.call(() -> sleep(1_000)));
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+		// l'appel abandonné occupe encore la seule place
+		assertEquals(1, guard.getActiveCount());
+		assertThrows(UpstreamUnavailableException.class, () -> guard.call(() -> "ok"));
+		// les erreurs du service sont propagées telles quelles
+		UpstreamGuard failing = new UpstreamGuard("failing", new TourGuideProperties.Guard());
+		assertThrows(IllegalArgumentException.class, () -> failing.call(() -> {
+			throw new IllegalArgumentException("bad request");
+		}));
+	}
+
+	@Test
+	public void hedgedCallReturnsFirstAnswer() {
+		TourGuideProperties.Guard properties = new TourGuideProperties.Guard(Duration.ofSeconds(2));
+		properties.setHedgeDelay(Duration.ofMillis(20));
+		UpstreamGuard guard = new UpstreamGuard("hedged", properties);
+		AtomicInteger attempts = new AtomicInteger();
+
+		long start = System.nanoTime();
+		String answer = guard.call(() -> attempts.incrementAndGet() == 1 ? sleep(1_500) : "hedge");
+
+		assertEquals("hedge", answer);
+		assertEquals(2, attempts.get());
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1_000));
+	}
+
+	@Test
+	public void closedGuardRejectsCallsAndReleasesItsMeters() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		TourGuideProperties.Guard properties = new TourGuideProperties.Guard(Duration.ofSeconds(1));
+		UpstreamGuard guard = new UpstreamGuard("closing", properties, registry);
+		assertEquals("ok", guard.call(() -> "ok"));
+		assertEquals(1, registry.get(TourGuideMetrics.UPSTREAM_CALLS).tag("outcome", "success").counter().count());
+
+		guard.close();
+		assertThrows(UpstreamUnavailableException.class, () -> guard.call(() -> "ok"));
+		assertTrue(registry.getMeters().isEmpty());
+
+		// la jauge suit le disjoncteur de la nouvelle protection, pas celui de l'ancienne
+		UpstreamGuard replacement = new UpstreamGuard("closing", properties, registry);
+		assertEquals(0, registry.get(TourGuideMetrics.UPSTREAM_CIRCUIT_STATE).gauge().value());
+		replacement.close();
+	}
+
+	@Test
+	public void trackingFallsBackToLastKnownLocationWhenGpsDoesNotAnswer() {
+		GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+		Attraction attraction = new Attraction("Attraction", "city", "state", 10, 10);
+		Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(attraction));
+		AtomicBoolean slow = new AtomicBoolean();
+		Mockito.when(gpsUtil.getUserLocation(any())).thenAnswer(call -> {
+			if (slow.get()) {
+				sleep(1_000);
+			}
+			return new VisitedLocation(call.getArgument(0), attraction, new Date());
+		});
+		RewardsService rewardsService = new RewardsService(gpsUtil, Mockito.mock(RewardCentral.class));
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getResilience().getGps().setTimeout(Duration.ofMillis(50));
+		TourGuideService service = new TourGuideService(gpsUtil, rewardsService,
+				TaskExecutors.standalone("tracking", properties.getExecutors().getTracking()), properties);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		VisitedLocation first = service.trackUserLocation(user);
+
+		slow.set(true);
+		VisitedLocation fallback = service.trackUserLocation(user);
+		List<VisitedLocation> batch = service.trackUserLocationsBatch(List.of(user)).join();
+		User unknown = new User(UUID.randomUUID(), "jane", "000", "jane@tourGuide.com");
+		assertThrows(UpstreamUnavailableException.class, () -> service.trackUserLocation(unknown));
+		service.tracker.stopTracking();
+
+		// localisations rangées sous forme compacte : comparées par valeur
+		for (VisitedLocation location : List.of(fallback, batch.get(0))) {
+			assertEquals(first.location.latitude, location.location.latitude);
+			assertEquals(first.location.longitude, location.location.longitude);
+			assertEquals(first.timeVisited, location.timeVisited);
+		}
+		assertEquals(1, user.getVisitedLocationCount());
+	}
+
+	@Test
+	public void locationRequestAnswers503WhenGpsCircuitIsOpenAndUserHasNoHistory() throws Exception {
+		GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+		Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(new Attraction("Attraction", "city", "state", 10, 10)));
+		Mockito.when(gpsUtil.getUserLocation(any())).thenThrow(new IllegalStateException("gps down"));
+		RewardsService rewardsService = new RewardsService(gpsUtil, Mockito.mock(RewardCentral.class));
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getResilience().getGps().setMinimumCalls(1);
+		properties.getResilience().getGps().setSlidingWindowSize(1);
+		properties.getResilience().getGps().setOpenDuration(Duration.ofSeconds(30));
+		TourGuideService service = new TourGuideService(gpsUtil, rewardsService,
+				TaskExecutors.standalone("tracking", properties.getExecutors().getTracking()), properties);
+		service.tracker.stopTracking();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		service.addUser(user);
+		// un échec suffit à ouvrir le disjoncteur
+		assertThrows(IllegalStateException.class,
+				() -> service.trackUserLocation(new User(UUID.randomUUID(), "probe", "000", "probe@tourGuide.com")));
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(new TourGuideController(service, new ObjectMapper(), properties,
+				Optional.empty())).build();
+
+		mvc.perform(get("/getLocation").param("userName", "jon"))
+				.andExpect(status().isServiceUnavailable())
+				.andExpect(header().string("Retry-After", "30"));
+		service.stopTracking();
+	}
+
+	@Test
+	public void asyncRequestsAnswer503WhenRequestExecutorIsSaturated() throws Exception {
+		GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+		Attraction attraction = new Attraction("Attraction", "city", "state", 10, 10);
+		Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(attraction));
+		CountDownLatch release = new CountDownLatch(1);
+		Mockito.when(gpsUtil.getUserLocation(any())).thenAnswer(call -> {
+			release.await(5, TimeUnit.SECONDS);
+			return new VisitedLocation(call.getArgument(0), attraction, new Date());
+		});
+		RewardsService rewardsService = new RewardsService(gpsUtil, Mockito.mock(RewardCentral.class));
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getExecutors().getRequests().setMaxConcurrency(1);
+		TourGuideService service = new TourGuideService(gpsUtil, rewardsService,
+				TaskExecutors.standalone("tracking", properties.getExecutors().getTracking()), properties);
+		service.tracker.stopTracking();
+		User busy = new User(UUID.randomUUID(), "busy", "000", "busy@tourGuide.com");
+		service.addUser(new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com"));
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(new TourGuideController(service, new ObjectMapper(), properties,
+				Optional.empty())).build();
+
+		// la seule place de l'exécuteur des requêtes est occupée
+		CompletableFuture<VisitedLocation> pending = service.getUserLocationAsync(busy);
+		for (String path : List.of("/async/getLocation", "/async/getNearbyAttractions")) {
+			MvcResult result = mvc.perform(get(path).param("userName", "jon")).andReturn();
+			mvc.perform(asyncDispatch(result))
+					.andExpect(status().isServiceUnavailable())
+					.andExpect(header().exists("Retry-After"));
+		}
+		release.countDown();
+		pending.join();
+		service.stopTracking();
+	}
+
+	private static String sleep(long millis) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return "late";
+	}
+}
@@ -2,16 +2,28 @@ package com.openclassrooms.tourguide;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.mockito.Mockito;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.executor.TaskExecutors;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.service.RewardEventBus;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
@@ -87,4 +99,220 @@ public class TestRewardsService {
         }
     }
 
+    @Test
+    void shouldOnlyEvaluateNewLocationsUntilProximityChanges() {
+        GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+        RewardCentral rewardCentral = Mockito.mock(RewardCentral.class);
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+
+        Attraction first = new Attraction("First", "city", "state", 0, 0);
+        Attraction second = new Attraction("Second", "city", "state", 40, 40);
+        Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(first, second));
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(20, 20), new Date()));
+        rewardsService.calculateRewards(user);
+        assertTrue(user.getUserRewards().isEmpty());
+        assertEquals(1, user.getEvaluatedLocationCount(1));
+
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), second, new Date()));
+        rewardsService.calculateRewards(user);
+        assertEquals(1, user.getUserRewards().size());
+        assertEquals(2, user.getEvaluatedLocationCount(1));
+
+        rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+        rewardsService.calculateRewards(user);
+        assertEquals(2, user.getUserRewards().size());
+    }
+
+    @Test
+    void catalogRefreshKeepsKnownAttractionsAndReevaluatesLocations() {
+        GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+        RewardCentral rewardCentral = Mockito.mock(RewardCentral.class);
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+        AttractionCatalog catalog = rewardsService.getAttractionCatalog();
+
+        Attraction first = new Attraction("First", "city", "state", 0, 0);
+        Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(first));
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(40, 40), new Date()));
+        rewardsService.calculateRewards(user);
+        assertTrue(user.getUserRewards().isEmpty());
+        AttractionCatalog.Snapshot initial = catalog.current();
+
+        // relecture du même catalogue sous de nouveaux identifiants : aucune nouvelle version
+        Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(new Attraction("First", "city", "state", 0, 0)));
+        assertFalse(catalog.refresh());
+        assertSame(initial, catalog.current());
+
+        Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(new Attraction("First", "city", "state", 0, 0),
+                new Attraction("Second", "city", "state", 40, 40)));
+        assertTrue(catalog.refresh());
+        assertEquals(2, catalog.getVersion());
+        assertSame(first, catalog.current().attractions().get(0));
+        assertSame(initial.index(), initial.nearest().getIndex());
+
+        rewardsService.calculateRewards(user);
+        assertEquals(1, user.getUserRewards().size());
+        assertEquals("Second", user.getUserRewards().get(0).attraction.attractionName);
+        Mockito.verify(gpsUtil, Mockito.times(3)).getAttractions();
+    }
+
+    @Test
+    void rewardEventsAreCoalescedPerUser() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Map<String, Integer> evaluations = new ConcurrentHashMap<>();
+        RewardEventBus bus = new RewardEventBus(user -> {
+            evaluations.merge(user.getUserName(), 1, Integer::sum);
+            firstStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 100, 1);
+        User busy = new User(UUID.randomUUID(), "busy", "000", "busy@tourGuide.com");
+        User other = new User(UUID.randomUUID(), "other", "000", "other@tourGuide.com");
+
+        bus.publish(busy);
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        // pendant l'évaluation de busy : une nouvelle évaluation, puis des publications regroupées
+        IntStream.range(0, 10).forEach(i -> bus.publish(busy));
+        IntStream.range(0, 10).forEach(i -> bus.publish(other));
+        assertEquals(2, bus.getQueuedCount());
+        release.countDown();
+
+        assertTrue(bus.awaitIdle(5, TimeUnit.SECONDS));
+        bus.close();
+        assertEquals(Map.of("busy", 2, "other", 1), evaluations);
+    }
+
+    @Test
+    void slowRewardEvaluationDoesNotHoldOtherPendingUsers() throws InterruptedException {
+        CountDownLatch othersDone = new CountDownLatch(9);
+        RewardEventBus bus = new RewardEventBus(user -> {
+            if (user.getUserName().equals("user0")) {
+                try {
+                    // ne se termine que si l'autre thread a évalué tous les autres utilisateurs
+                    othersDone.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                othersDone.countDown();
+            }
+        }, 100, 2);
+
+        IntStream.range(0, 10).forEach(i -> bus.publish(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com")));
+
+        assertTrue(othersDone.await(5, TimeUnit.SECONDS));
+        assertTrue(bus.awaitIdle(5, TimeUnit.SECONDS));
+        bus.close();
+    }
+
+    @Test
+    void shouldKeepEvaluatingNewLocationsBeyondHistoryRetention() {
+        GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+        RewardCentral rewardCentral = Mockito.mock(RewardCentral.class);
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+
+        Attraction attraction = new Attraction("Attraction", "city", "state", 40, 40);
+        Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(attraction));
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com", 3);
+        IntStream.range(0, 200).forEach(i -> user.addToVisitedLocations(
+                new VisitedLocation(user.getUserId(), new Location(-i / 10.0, -i / 10.0), new Date(i))));
+        rewardsService.calculateRewards(user);
+
+        assertEquals(200, user.getVisitedLocationCount());
+        assertEquals(3, user.getVisitedLocations().size());
+        assertEquals(new Date(197), user.getVisitedLocations().get(0).timeVisited);
+        assertEquals(new Date(199), user.getLastVisitedLocation().timeVisited);
+        assertEquals(200, user.getEvaluatedLocationCount(1));
+        assertTrue(user.getUserRewards().isEmpty());
+
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+        assertEquals(1, user.getVisitedLocationsSince(200).size());
+        rewardsService.calculateRewards(user);
+        assertEquals(1, user.getUserRewards().size());
+        assertEquals(201, user.getEvaluatedLocationCount(1));
+    }
+
+    @Test
+    void shouldGrantSameAttractionOnlyOnceUnderContention() {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        Attraction attraction = new Attraction("TestAttraction", "city", "state", 0, 0);
+        VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+
+        IntStream.range(0, 1000).parallel()
+                .forEach(i -> user.addUserReward(new UserReward(visitedLocation, attraction, i)));
+
+        assertEquals(1, user.getUserRewards().size());
+        assertTrue(user.hasRewardFor(attraction));
+    }
+
+    @Test
+    void shouldCalculateRewardsForAllUsersOnVirtualThreads() {
+        GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+        RewardCentral rewardCentral = Mockito.mock(RewardCentral.class);
+        TourGuideProperties.Pool pool = new TourGuideProperties.Pool();
+        pool.setMaxConcurrency(10);
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral, TaskExecutors.virtual("rewards", pool));
+
+        Attraction attraction = new Attraction("TestAttraction", "city", "state", 0, 0);
+        Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(attraction));
+
+        List<User> users = IntStream.range(0, 100)
+                .mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .toList();
+        users.forEach(user -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date())));
+
+        rewardsService.calculateRewardsForAllUsers(users);
+
+        users.forEach(user -> assertEquals(1, user.getUserRewards().size()));
+    }
+
+    @Test
+    void shouldShareOneRewardCentralCallForConcurrentLookups() {
+        GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+        RewardCentral rewardCentral = Mockito.mock(RewardCentral.class);
+        Mockito.when(rewardCentral.getAttractionRewardPoints(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return 42;
+        });
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+
+        Attraction attraction = new Attraction("TestAttraction", "city", "state", 0, 0);
+        UUID userId = UUID.randomUUID();
+
+        IntStream.range(0, 20).parallel()
+                .forEach(i -> assertEquals(42, rewardsService.getRewardPointsForUser(attraction, userId)));
+        assertEquals(42, rewardsService.getRewardPointsForUser(attraction, userId));
+
+        Mockito.verify(rewardCentral, Mockito.times(1)).getAttractionRewardPoints(attraction.attractionId, userId);
+        assertTrue(rewardsService.getRewardPointsCache().stats().hitCount() > 0);
+    }
+
+    @Test
+    void shouldRecordRewardMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        try {
+            GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+            RewardCentral rewardCentral = Mockito.mock(RewardCentral.class);
+            RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+            Attraction attraction = new Attraction("TestAttraction", "city", "state", 0, 0);
+            Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(attraction));
+
+            User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+            rewardsService.calculateRewards(user);
+
+            assertEquals(1, registry.get(TourGuideMetrics.CALCULATE_REWARDS).timer().count());
+            assertEquals(1, registry.get(TourGuideMetrics.REWARD_CENTRAL_POINTS).timer().count());
+        } finally {
+            Metrics.removeRegistry(registry);
+        }
+    }
 }
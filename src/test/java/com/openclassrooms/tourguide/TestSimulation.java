@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import gpsUtil.GpsUtil;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.simulation.LatencyDistribution;
+import com.openclassrooms.tourguide.simulation.SimulatedGpsUtil;
+import com.openclassrooms.tourguide.simulation.SimulatedUpstreamException;
+import com.openclassrooms.tourguide.simulation.UpstreamSimulation;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"tourguide.simulation.enabled=true",
+		"tourguide.simulation.gps.latency.p50=1ms",
+		"tourguide.simulation.gps.latency.max=5ms",
+		"tourguide.simulation.reward-central.latency.p50=1ms",
+		"tourguide.simulation.trip-pricer.latency.p50=2ms" })
+public class TestSimulation {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private GpsUtil gpsUtil;
+
+	@BeforeAll
+	public static void createInternalUsers() {
+		// les utilisateurs internes sont créés au démarrage du contexte, après cette méthode
+		InternalTestHelper.setInternalUserNumber(100);
+	}
+
+	@Test
+	public void latencyDistributionFollowsConfiguredPercentiles() {
+		LatencyDistribution distribution = LatencyDistribution.of(Map.of("p50", Duration.ofMillis(10),
+				"p99", Duration.ofMillis(100), "max", Duration.ofMillis(1000)));
+		SplittableRandom random = new SplittableRandom(42);
+		long[] samples = LongStream.generate(() -> distribution.sampleNanos(random)).limit(100_000).sorted().toArray();
+
+		assertEquals(10, samples[50_000] / 1_000_000, 1);
+		assertEquals(100, samples[99_000] / 1_000_000, 5);
+		assertTrue(samples[samples.length - 1] <= Duration.ofSeconds(1).toNanos());
+		assertThrows(IllegalArgumentException.class, () -> LatencyDistribution.of(Map.of("p50",
+				Duration.ofMillis(10), "p99", Duration.ofMillis(1))));
+	}
+
+	@Test
+	public void upstreamFailsAndThrottlesAsConfigured() {
+		UpstreamSimulation failing = new UpstreamSimulation("gps", LatencyDistribution.NONE, 1, 0);
+		assertThrows(SimulatedUpstreamException.class, () -> failing.call(() -> "ok"));
+		assertEquals(1, failing.getFailureCount());
+
+		UpstreamSimulation throttled = new UpstreamSimulation("tripPricer", LatencyDistribution.NONE, 0, 10);
+		int accepted = 0;
+		for (int i = 0; i < 30; i++) {
+			try {
+				throttled.call(() -> "ok");
+				accepted++;
+			} catch (SimulatedUpstreamException e) {
+				// au-delà de la limite
+			}
+		}
+		// la fenêtre d'une seconde peut changer pendant la boucle
+		assertTrue(accepted >= 10 && accepted <= 20, "accepted: " + accepted);
+		assertEquals(30 - accepted, throttled.getThrottledCount());
+	}
+
+	@Test
+	public void loadGeneratorDrivesControllerAgainstSimulatedServices() {
+		assertTrue(gpsUtil instanceof SimulatedGpsUtil);
+		assertEquals(gpsUtil.getAttractions().get(0).attractionId, gpsUtil.getAttractions().get(0).attractionId);
+		assertTrue(gpsUtil.getUserLocation(UUID.randomUUID()).location != null);
+
+		LoadGenerator generator = new LoadGenerator("http://localhost:" + port, 100,
+				List.of("/getLocation", "/getNearbyAttractions", "/getRewards", "/getTripDeals"), Duration.ofSeconds(10));
+		LoadGenerator.Report report = generator.run(100, Duration.ofSeconds(2));
+
+		assertEquals(200, report.requests());
+		assertEquals(0, report.failures(), report.toString());
+		assertTrue(report.p50().compareTo(report.p99()) <= 0 && report.p99().compareTo(report.p999()) <= 0
+				&& report.p999().compareTo(report.max()) <= 0, report.toString());
+	}
+}
@@ -1,26 +1,46 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import com.openclassrooms.tourguide.dto.NearbyAttractionDTO;
 import org.junit.jupiter.api.Test;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import org.mockito.Mockito;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.TourGuideProperties;
+import com.openclassrooms.tourguide.executor.TaskExecutors;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.LocationBatcher;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TripDealsCache;
+import com.openclassrooms.tourguide.pipeline.BatchPipeline;
+import com.openclassrooms.tourguide.pipeline.BatchReport;
 import com.openclassrooms.tourguide.user.User;
 import tripPricer.Provider;
+import tripPricer.TripPricer;
 
 public class TestTourGuideService {
 
@@ -113,6 +133,27 @@ public class TestTourGuideService {
 		assertEquals(5, attractions.size());
 	}
 
+	@Test
+	public void getNearbyAttractionsAsync() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		List<NearbyAttractionDTO> attractions = tourGuideService.getUserLocationAsync(user)
+				.thenCompose(tourGuideService::getFiveNearestByAttractionsAsync)
+				.join();
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(5, attractions.size());
+		for (int i = 1; i < attractions.size(); i++) {
+			assertTrue(attractions.get(i - 1).distanceMiles() <= attractions.get(i).distanceMiles());
+		}
+	}
+
     @Test
 	public void getTripDeals() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -144,4 +185,277 @@ public class TestTourGuideService {
 
         verify(service, times(2)).trackUserLocation(any(User.class));
     }
+
+    @Test
+    void shouldTrackLocationForSeveralBatchesWithTheSameExecutor() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService service = new TourGuideService(gpsUtil, rewardsService);
+        service.tracker.stopTracking();
+
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        service.trackUsersLocationsParallel(List.of(user));
+        service.trackUsersLocationsParallel(List.of(user));
+
+        assertEquals(2, user.getVisitedLocations().size());
+    }
+
+    @Test
+    void retryAfterRewardFailureDoesNotRecordLocationTwice() {
+        GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+        RewardCentral rewardCentral = Mockito.mock(RewardCentral.class);
+        Attraction attraction = new Attraction("Attraction", "city", "state", 10, 10);
+        Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(attraction));
+        Mockito.when(gpsUtil.getUserLocation(any()))
+                .thenAnswer(call -> new VisitedLocation(call.getArgument(0), attraction, new Date()));
+        Mockito.when(rewardCentral.getAttractionRewardPoints(any(), any()))
+                .thenThrow(new IllegalStateException("RewardCentral unavailable"))
+                .thenReturn(100);
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService service = new TourGuideService(gpsUtil, rewardsService);
+        service.tracker.stopTracking();
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        BatchReport<User> report = service.trackUsersLocationsParallel(List.of(user));
+
+        assertTrue(report.failedItems().isEmpty());
+        assertEquals(1, report.retries());
+        assertEquals(1, user.getVisitedLocationCount());
+        assertEquals(1, user.getUserRewards().size());
+        verify(gpsUtil, times(1)).getUserLocation(any());
+    }
+
+    @Test
+    void trackerShouldTrackEveryUserInChunks() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getTracker().setInterval(Duration.ofHours(1));
+        properties.getTracker().setChunkSize(2);
+        TourGuideService service = new TourGuideService(gpsUtil, rewardsService,
+                TaskExecutors.standalone("tracking", properties.getExecutors().getTracking()), properties);
+        // le premier cycle planifié, sans utilisateur, est terminé avant l'ajout des utilisateurs
+        while (service.tracker.getCycleCount() == 0) {
+            Thread.onSpinWait();
+        }
+
+        List<User> users = IntStream.range(0, 5)
+                .mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .toList();
+        users.forEach(service::addUser);
+
+        service.tracker.run();
+        service.tracker.stopTracking();
+
+        users.forEach(user -> assertEquals(1, user.getVisitedLocations().size()));
+        assertEquals(0, service.tracker.getOverrunCount());
+    }
+
+    @Test
+    void backgroundBootstrapLoadsUsersInOrderBeforeReadiness() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(2_500);
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getUsers().setBootstrap(TourGuideProperties.BootstrapMode.BACKGROUND);
+        properties.getUsers().setBootstrapChunkSize(300);
+        properties.getTracker().setInterval(Duration.ofHours(1));
+        TourGuideService service = new TourGuideService(gpsUtil, rewardsService,
+                TaskExecutors.standalone("tracking", properties.getExecutors().getTracking()), properties);
+
+        service.whenReady().toCompletableFuture().join();
+        service.stopTracking();
+
+        assertTrue(service.isReady());
+        List<User> users = service.getAllUsers();
+        assertEquals(2_500, users.size());
+        IntStream.range(0, 2_500).forEach(i -> {
+            assertEquals("internalUser" + i, users.get(i).getUserName());
+            assertEquals(3, users.get(i).getVisitedLocationCount());
+        });
+        assertEquals(2_500, users.stream().map(User::getUserId).distinct().count());
+        assertEquals(4, users.get(0).getUserId().version());
+    }
+
+    @Test
+    void trackingWithRewardEventsCalculatesRewardsAfterReturning() throws Exception {
+        GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+        RewardCentral rewardCentral = Mockito.mock(RewardCentral.class);
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+        Attraction attraction = new Attraction("Attraction", "city", "state", 10, 10);
+        Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(attraction));
+        Mockito.when(gpsUtil.getUserLocation(any()))
+                .thenAnswer(call -> new VisitedLocation(call.getArgument(0), attraction, new Date()));
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getRewardEvents().setEnabled(true);
+        properties.getRewardEvents().setWorkers(2);
+        TourGuideService service = new TourGuideService(gpsUtil, rewardsService,
+                TaskExecutors.standalone("tracking", properties.getExecutors().getTracking()), properties);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        service.trackUserLocation(user);
+        service.trackUserLocation(user);
+        assertTrue(service.getRewardEventBus().awaitIdle(5, TimeUnit.SECONDS));
+        service.stopTracking();
+
+        assertEquals(2, user.getVisitedLocationCount());
+        assertEquals(1, user.getUserRewards().size());
+        assertEquals(2, user.getEvaluatedLocationCount(1));
+    }
+
+    @Test
+    void shouldTrackUserLocationsInBatches() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService service = new TourGuideService(gpsUtil, rewardsService);
+        service.tracker.stopTracking();
+
+        List<User> users = IntStream.range(0, 50)
+                .mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .toList();
+
+        List<VisitedLocation> locations = service.trackUserLocationsBatch(users).join();
+        service.stopTracking();
+
+        assertEquals(50, locations.size());
+        IntStream.range(0, 50).forEach(i -> {
+            assertEquals(users.get(i).getUserId(), locations.get(i).userId);
+            assertEquals(1, users.get(i).getVisitedLocations().size());
+        });
+    }
+
+    @Test
+    void locationBatcherShouldShareOneCallForPendingRequestsOfSameUser() {
+        AtomicInteger calls = new AtomicInteger();
+        UUID userId = UUID.randomUUID();
+        LocationBatcher batcher = new LocationBatcher(id -> {
+            calls.incrementAndGet();
+            return new VisitedLocation(id, new Location(1, 2), new Date());
+        }, TaskExecutors.standalone("gps", new TourGuideProperties.Pool()), Duration.ofMillis(50), 100, 4);
+
+        List<CompletableFuture<VisitedLocation>> requests = IntStream.range(0, 10)
+                .mapToObj(i -> batcher.request(userId))
+                .toList();
+        requests.forEach(request -> assertEquals(userId, request.join().userId));
+        batcher.close();
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void locationBatcherShouldQueueBeyondParallelismWithoutBlockingItsScheduler() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        TourGuideProperties.GpsBatch properties = new TourGuideProperties.GpsBatch();
+        properties.setMaxBatchSize(5);
+        properties.setParallelism(2);
+        LocationBatcher batcher = new LocationBatcher(id -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            threads.add(Thread.currentThread().getName());
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return new VisitedLocation(id, new Location(1, 2), new Date());
+        }, properties);
+
+        List<CompletableFuture<VisitedLocation>> requests = IntStream.range(0, 40)
+                .mapToObj(i -> batcher.request(UUID.randomUUID()))
+                .toList();
+        requests.forEach(request -> assertNotNull(request.orTimeout(5, TimeUnit.SECONDS).join()));
+        batcher.close();
+
+        assertTrue(maxRunning.get() <= 2);
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("gps-batch-")), threads.toString());
+    }
+
+    @Test
+    void tripDealsShouldBeCachedUntilPreferencesChange() {
+        TripPricer tripPricer = Mockito.mock(TripPricer.class);
+        Mockito.when(tripPricer.getPrice(any(), any(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt()))
+                .thenAnswer(invocation -> List.of(new Provider(UUID.randomUUID(), "provider", Math.random())));
+        TripDealsCache cache = new TripDealsCache(tripPricer, "key", new TourGuideProperties.TripDeals());
+        UUID userId = UUID.randomUUID();
+
+        List<Provider> deals = cache.getTripDeals(new TripDealsCache.Key(userId, 2, 1, 7, 100));
+        assertTrue(deals == cache.getTripDeals(new TripDealsCache.Key(userId, 2, 1, 7, 100)));
+        verify(tripPricer, times(1)).getPrice("key", userId, 2, 1, 7, 100);
+
+        List<Provider> changedDeals = cache.getTripDeals(new TripDealsCache.Key(userId, 2, 1, 7, 150));
+        assertTrue(deals != changedDeals);
+        assertEquals(1, cache.estimatedSize());
+
+        cache.refresh(new BatchPipeline("trip-deals", Runnable::run, 10, 10, 1));
+        assertTrue(changedDeals != cache.getTripDeals(new TripDealsCache.Key(userId, 2, 1, 7, 150)));
+        verify(tripPricer, times(2)).getPrice("key", userId, 2, 1, 7, 150);
+    }
+
+    @Test
+    void getNearbyAttractionsForSeveralUsers() {
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(3);
+        TourGuideService service = new TourGuideService(gpsUtil, rewardsService);
+        // les localisations ne doivent plus bouger pendant la comparaison : on laisse le premier cycle se terminer
+        while (service.tracker.getCycleCount() == 0) {
+            Thread.onSpinWait();
+        }
+        service.tracker.stopTracking();
+        User untracked = new User(UUID.randomUUID(), "untracked", "000", "untracked@tourGuide.com");
+        service.addUser(untracked);
+
+        Map<String, CompletableFuture<List<NearbyAttractionDTO>>> results = service.getFiveNearestByAttractionsForUsers(
+                List.of("internalUser0", "internalUser1", "internalUser0", "untracked", "unknown"));
+
+        assertEquals(List.of("internalUser0", "internalUser1", "untracked", "unknown"), List.copyOf(results.keySet()));
+        for (String userName : List.of("internalUser0", "internalUser1", "untracked")) {
+            User user = service.getUser(userName);
+            List<NearbyAttractionDTO> nearby = results.get(userName).join();
+            assertEquals(service.getFiveNearestByAttractions(user.getLastVisitedLocation()), nearby);
+        }
+        assertEquals(1, untracked.getVisitedLocations().size());
+        assertThrows(Exception.class, () -> results.get("unknown").join());
+        service.stopTracking();
+    }
+
+    @Test
+    void nearbyAttractionsForSeveralUsersIsolateTrackingFailures() {
+        GpsUtil gpsUtil = Mockito.mock(GpsUtil.class);
+        Attraction attraction = new Attraction("Attraction", "city", "state", 10, 10);
+        Mockito.when(gpsUtil.getAttractions()).thenReturn(List.of(attraction));
+        User failing = new User(UUID.randomUUID(), "failing", "000", "failing@tourGuide.com");
+        User tracked = new User(UUID.randomUUID(), "tracked", "000", "tracked@tourGuide.com");
+        Mockito.when(gpsUtil.getUserLocation(any())).thenAnswer(call -> {
+            if (failing.getUserId().equals(call.getArgument(0))) {
+                throw new IllegalStateException("GPS failure");
+            }
+            return new VisitedLocation(call.getArgument(0), attraction, new Date());
+        });
+        RewardCentral rewardCentral = Mockito.mock(RewardCentral.class);
+        Mockito.when(rewardCentral.getAttractionRewardPoints(any(), any())).thenReturn(100);
+        RewardsService rewardsService = new RewardsService(gpsUtil, rewardCentral);
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService service = new TourGuideService(gpsUtil, rewardsService);
+        service.tracker.stopTracking();
+        service.addUser(failing);
+        service.addUser(tracked);
+
+        Map<String, CompletableFuture<List<NearbyAttractionDTO>>> results =
+                service.getFiveNearestByAttractionsForUsers(List.of("failing", "tracked"));
+
+        assertThrows(Exception.class, () -> results.get("failing").join());
+        List<NearbyAttractionDTO> nearby = results.get("tracked").join();
+        assertEquals("Attraction", nearby.get(0).attractionName());
+        assertEquals(1, tracked.getVisitedLocationCount());
+        service.stopTracking();
+    }
 }
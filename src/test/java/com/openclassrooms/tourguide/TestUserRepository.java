@@ -0,0 +1,115 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.openclassrooms.tourguide.repository.FileUserRepository;
+import com.openclassrooms.tourguide.repository.InMemoryUserRepository;
+import com.openclassrooms.tourguide.repository.UserRepository;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+public class TestUserRepository {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void concurrentAddsKeepOneUserPerName() {
+		UserRepository repository = new InMemoryUserRepository();
+
+		long added = IntStream.range(0, 20_000).parallel()
+				.filter(i -> repository.add(user("user" + (i % 5_000))))
+				.count();
+
+		assertEquals(5_000, added);
+		assertEquals(5_000, repository.count());
+		assertEquals(5_000, repository.snapshot().size());
+		repository.snapshot().forEach(user -> assertSame(user, repository.findByUserName(user.getUserName())));
+	}
+
+	@Test
+	public void snapshotIsNotAffectedByLaterAdds() {
+		UserRepository repository = new InMemoryUserRepository();
+		IntStream.range(0, 1_500).forEach(i -> repository.add(user("user" + i)));
+
+		List<User> snapshot = repository.snapshot();
+		IntStream.range(1_500, 3_000).forEach(i -> repository.add(user("user" + i)));
+
+		assertEquals(1_500, snapshot.size());
+		assertEquals("user1499", snapshot.get(1_499).getUserName());
+		assertEquals(3_000, repository.snapshot().size());
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.add(user("other")));
+	}
+
+	@Test
+	public void visitedLocationsStayReadableWhileCleared() throws Exception {
+		User user = user("user");
+		AtomicBoolean running = new AtomicBoolean(true);
+		Thread writer = new Thread(() -> {
+			while (running.get()) {
+				IntStream.range(0, 200).forEach(i -> user.addToVisitedLocations(
+						new VisitedLocation(user.getUserId(), new Location(i, i), new Date())));
+				user.clearVisitedLocations();
+			}
+		});
+		writer.start();
+		try {
+			for (int i = 0; i < 20_000; i++) {
+				List<VisitedLocation> locations = user.getVisitedLocations();
+				locations.forEach(location -> assertEquals(user.getUserId(), location.userId));
+			}
+		} finally {
+			running.set(false);
+			writer.join();
+		}
+	}
+
+	@Test
+	public void fileRepositoryReloadsUsersAndDropsIncompleteRecord() throws Exception {
+		Path file = directory.resolve("users.dat");
+		User jon = user("jon");
+		try (FileUserRepository repository = new FileUserRepository(file, 10)) {
+			assertTrue(repository.add(jon));
+			assertTrue(repository.add(user("jon2")));
+			assertFalse(repository.add(user("jon")));
+		}
+		Files.write(file, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+
+		try (FileUserRepository repository = new FileUserRepository(file, 10)) {
+			assertEquals(2, repository.count());
+			User reloaded = repository.findByUserName("jon");
+			assertEquals(jon.getUserId(), reloaded.getUserId());
+			assertEquals(jon.getEmailAddress(), reloaded.getEmailAddress());
+			assertNull(repository.findByUserName("unknown"));
+			assertTrue(repository.add(user("jon3")));
+		}
+
+		try (FileUserRepository repository = new FileUserRepository(file, 10)) {
+			assertEquals(List.of("jon", "jon2", "jon3"),
+					repository.snapshot().stream().map(User::getUserName).toList());
+		}
+	}
+
+	private static User user(String userName) {
+		return new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+	}
+}